@@ -1,14 +1,17 @@
 package application;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import application.pieces.Bishop;
-import application.pieces.Knight;
-import application.pieces.Pawn;
-import application.pieces.Piece;
-import application.pieces.Queen;
-import application.pieces.Rook;
+import application.engine.Move;
+import application.engine.MoveGenerator;
+import application.engine.MoveList;
+import application.engine.Position;
+import application.engine.TimeManager;
 
 
 /**
@@ -18,7 +21,10 @@ import application.pieces.Rook;
  *    and how many recursive steps forward it shall
  *    look for the best move. Implemented with a 
  *    miniMax algorithm which assumes best play from
- *    the opponent.
+ *    the opponent. The AI searches one step deeper at
+ *    a time until its time for the move is used. The
+ *    root moves may be searched in parallel, each on its
+ *    own copy of the position (see {@link #setThreads(int)}).
  *
  * @version 2.2   24 April 2017
  *
@@ -27,8 +33,11 @@ import application.pieces.Rook;
 
 public class ChessAI extends Player {
 
-	/** The number of steps the AI will look ahead */
-	public static final int RECURSION_DEPTH = 2;
+	/** The maximum number of steps of a search */
+	public static final int MAX_PLY = 64;
+	
+	/** The time the AI uses per move (ms) when it has no clock */
+	public static final long DEFAULT_MOVE_TIME = 1000;
 	
 	public static final double QUEEN_VALUE = 9.0, ROOK_VALUE = 5.0, BISHOP_VALUE = 3.0,
 			KNIGHT_VALUE = 3.0, PAWN_VALUE = 1.0, LEGAL_MOVES_VALUE = 0.05,
@@ -37,9 +46,20 @@ public class ChessAI extends Player {
 	private ChessMove move;
 	private Player opponent;
 	private ChessGame game;
+	private ForkJoinPool pool;
+	
+	/** Searches of root moves not in use, and all of them */
+	private final Queue<RootSearch> idleSearches = new ConcurrentLinkedQueue<>();
+	private final List<RootSearch> rootSearches = new ArrayList<>();
+	
+	private final TimeManager time = new TimeManager();
+	private long moveTime = DEFAULT_MOVE_TIME;
+	private long timeLeft = 0;
+	private long increment = 0;
+	private int movesToGo = 0;
+	private volatile boolean aborted;
+	private int depthReached;
 	
-	private int movesCalculated = 0;
-	private int leafNodeMoves = 0;
 	private StopWatch clock = new StopWatch();
 
 	public ChessAI() {
@@ -59,11 +79,38 @@ public class ChessAI extends Player {
 	public void move() {
 		game.movePiece(move);
 	}
+	
+	/** Makes the AI use a fixed time (ms) per move */
+	public void setMoveTime(long moveTime) {
+		this.moveTime = moveTime;
+		this.timeLeft = 0;
+	}
+	
+	/** Sets the number of threads the root moves are searched
+	 * with. With one thread, they are searched one by one */
+	public void setThreads(int threads) {
+		if (pool != null) {
+			pool.shutdown();
+		}
+		pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+	}
+	
+	/** Makes the AI share the time left on its clock (ms) between
+	 * its moves. The increment (ms) is added to the clock after
+	 * each move, and movesToGo is the number of moves until the
+	 * next time control, 0 if there is none */
+	public void setTimeControl(long timeLeft, long increment, int movesToGo) {
+		this.timeLeft = timeLeft;
+		this.increment = increment;
+		this.movesToGo = movesToGo;
+	}
 
 	private void findBestMove() throws IllegalStateException {
 		//FOR DEBUGGING
-		movesCalculated = 0;
-		leafNodeMoves = 0;
+		for (RootSearch search : rootSearches) {
+			search.movesCalculated = 0;
+			search.leafNodeMoves = 0;
+		}
 		clock.start();
 		
 		move = null;
@@ -73,135 +120,181 @@ public class ChessAI extends Player {
 			throw new IllegalStateException("It's not AIs turn, but trying to find best move.");
 		}
 		
-		double max = Double.NEGATIVE_INFINITY;
-		double score = 0;
-		
-		Collection<Piece> pieces = new ArrayList<>(getPieces(game));
-		for (Piece piece : pieces) {
-			for (ChessMove move : piece.getLegalMoves()) {
-				game.movePiece(move);
-				score = -negaMax(RECURSION_DEPTH);
-				piece.undoLastMove();
-				if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getCoordinates()[1] % 7 == 0) {
-					game.removePiece(move.getToSquare().getPiece());
-				}
-				if (move.capturesPiece()) {
-					game.undoRemovePiece(move.getTargetPiece());
-				} else if (move instanceof CastelingMove) {
-					((CastelingMove) move).getRook().undoLastMove();
-				}
-				game.undo();
-				
-				if (score > max) {
-					max = score;
-					this.move = move;
-				}
-				movesCalculated++;
-			}
+		if (timeLeft > 0) {
+			time.start(timeLeft, increment, movesToGo);
+		} else {
+			time.startMoveTime(moveTime);
 		}
+		aborted = false;
+		depthReached = 0;
+		
+		Position position = game.getPosition();
+		MoveList rootMoves = new MoveList();
+		rootMoves.generateLegalMoves(position);
+		int bestMove = Move.NONE;
 		
-		if (move == null) { //Happens when the AI is checkmated in an amount of moves < rec. depth 
-			for (Piece piece : pieces) {
-				for (ChessMove move : piece.getLegalMoves()) {
-					this.move = move;
-					return;
+		//Searches one step deeper each iteration, starting with the best move so far
+		for (int depth = 1; depth < MAX_PLY && (depth == 1 || time.canStartIteration()); depth++) {
+			rootMoves.moveToFront(bestMove);
+			double[] scores = searchRootMoves(position, rootMoves, depth);
+			if (aborted) {
+				break; //The unfinished iteration is thrown away
+			}
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < scores.length; i++) {
+				if (scores[i] > max) {
+					max = scores[i];
+					bestMove = rootMoves.get(i);
 				}
 			}
+			depthReached = depth;
 		}
+		this.move = game.toChessMove(bestMove);
+		
 		//FOR DEBUGGING
 		clock.stop();
+		long movesCalculated = 0, leafNodeMoves = 0;
+		for (RootSearch search : rootSearches) {
+			movesCalculated += search.movesCalculated;
+			leafNodeMoves += search.leafNodeMoves;
+		}
+		System.out.println("Depth reached: " + depthReached);
 		System.out.println("Moves calculated: " + movesCalculated);
 		System.out.println("Leaf node moves: " + leafNodeMoves);
 		Double time = clock.getElapsedTimeSecs();
 		System.out.println("Tot calc. time: " + String.format("%.4f", time) + " sec.");
-		System.out.println("Calc. time per move: " + String.format("%.4f", (time * 1000000 / movesCalculated)) + " s.\n");
+		System.out.println("Calc. time per move: " + String.format("%.4f", (time * 1000000 / Math.max(movesCalculated, 1))) + " s.\n");
 	}
-
-	/** Finds the optimal move to make assuming the
-	 *  opponent plays the best moves by depth first
-	 *  searching through the possible move tree */
-	private double negaMax(int recursionDepth) {
-		if (recursionDepth == 0) {
-			leafNodeMoves++;
-			return evaluatePosition();
+	
+	/** Searches each root move to the depth, in parallel if there
+	 * are several threads. Returns the score of each move, or
+	 * negative infinity for the moves that are not searched */
+	private double[] searchRootMoves(Position position, MoveList rootMoves, int depth) {
+		double[] scores = new double[rootMoves.size()];
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < rootMoves.size(); i++) {
+			int index = i;
+			int move = rootMoves.get(i);
+			scores[i] = Double.NEGATIVE_INFINITY;
+			if (Move.isPromotion(move) && Move.promotionType(move) != Position.QUEEN) {
+				continue; //The game only promotes pawns to queens
+			}
+			tasks.add(ForkJoinTask.adapt(() -> {
+				RootSearch search = takeRootSearch();
+				try {
+					scores[index] = search.searchMove(position, move, depth);
+				} finally {
+					idleSearches.add(search);
+				}
+			}));
 		}
-		double max = Double.NEGATIVE_INFINITY;
-		double score = 0;
+		if (pool == null) {
+			for (ForkJoinTask<?> task : tasks) {
+				task.invoke();
+			}
+		} else {
+			pool.invoke(ForkJoinTask.adapt(() -> {
+				ForkJoinTask.invokeAll(tasks);
+			}));
+		}
+		return scores;
+	}
+	
+	/** An idle search, or a new one if all are in use */
+	private synchronized RootSearch takeRootSearch() {
+		RootSearch search = idleSearches.poll();
+		if (search == null) {
+			search = new RootSearch();
+			rootSearches.add(search);
+		}
+		return search;
+	}
+	
+	/** The total value of the pieces of the given color,
+	 * counted from the bitboards of the position */
+	private static double getMaterial(Position position, int color) {
+		return QUEEN_VALUE * position.count(color, Position.QUEEN)
+				+ ROOK_VALUE * position.count(color, Position.ROOK)
+				+ BISHOP_VALUE * position.count(color, Position.BISHOP)
+				+ KNIGHT_VALUE * position.count(color, Position.KNIGHT)
+				+ PAWN_VALUE * position.count(color, Position.PAWN);
+	}
+	
+	/**
+	 * The search of one root move at a time, with its own
+	 * copy of the position, so several can run in parallel.
+	 */
+	private class RootSearch {
 		
-		Collection<Piece> pieces = new ArrayList<>(game.getCurrent().getPieces(game));		
-		for (Piece piece : pieces) {
-			for (ChessMove move : piece.getLegalMoves()) {
-				game.movePiece(move);
-				score = -negaMax(recursionDepth - 1);
-				piece.undoLastMove();
-				if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getCoordinates()[1] % 7 == 0) {
-					game.removePiece(move.getToSquare().getPiece());
-				}
-				if (move.capturesPiece()) {
-					game.undoRemovePiece(move.getTargetPiece());
-				} else if (move instanceof CastelingMove) {
-					((CastelingMove) move).getRook().undoLastMove();
-				}
-				game.undo();
-				
+		private Position position;
+		private final MoveList[] moveLists = MoveList.createStack(MAX_PLY);
+		private final int[] leafMoves = new int[MoveGenerator.MAX_MOVES];
+		private long nodes;
+		private long movesCalculated;
+		private long leafNodeMoves;
+		
+		/** The score of the move in the position, searched to the depth */
+		private double searchMove(Position root, int move, int depth) {
+			position = new Position(root);
+			position.makeMove(move);
+			movesCalculated++;
+			return -negaMax(depth - 1, 1);
+		}
+		
+		/** Finds the optimal move to make assuming the
+		 *  opponent plays the best moves by depth first
+		 *  searching through the possible move tree */
+		private double negaMax(int recursionDepth, int ply) {
+			if ((++nodes & (TimeManager.CHECK_INTERVAL - 1)) == 0 && depthReached > 0
+					&& time.isHardLimitReached()) {
+				aborted = true;
+			}
+			if (aborted) {
+				return 0;
+			}
+			if (recursionDepth == 0) {
+				leafNodeMoves++;
+				return evaluatePosition(ply);
+			}
+			double max = Double.NEGATIVE_INFINITY;
+			double score = 0;
+			
+			MoveList moves = moveLists[ply];
+			if (moves.generateLegalMoves(position) == 0) {
+				leafNodeMoves++;
+				return getTerminalScore(ply);
+			}
+			for (int i = 0; i < moves.size(); i++) {
+				position.makeMove(moves.get(i));
+				score = -negaMax(recursionDepth - 1, ply + 1);
+				position.unmakeMove();
+			
 				if (score > max) {
 					max = score;
 				}
 				movesCalculated++;
 			}
+			return max;
 		}
-		return max;
-	}
 
-	/** Evaluates the position for the AI vs the
-	 * opponent, returning a score based on the
-	 *  material and number of available moves it has */
-	private double evaluatePosition() {
-		int whoToMove = (game.getCurrent() == this) ? -1 : 1;
-		double score = 0;
-		
-		if (game.isCheckMate(game.getCurrent())) {
-			return -CHECK_MATE_VALUE;
-		} else if (game.isCheckMate((game.getCurrent() == this) ? opponent : this)) {
-			return CHECK_MATE_VALUE;
-		} else if (game.isStalemate(game.getCurrent())) {
-			return 0;
-		}
-		
-		for (Piece piece : game.getCurrent().getPieces(game)) {
-			if (piece instanceof Queen) {
-				score += QUEEN_VALUE;
-			} else if (piece instanceof Rook) {
-				score += ROOK_VALUE;
-			} else if (piece instanceof Bishop) {
-				score += BISHOP_VALUE;
-			} else if (piece instanceof Knight) {
-				score += KNIGHT_VALUE;
-			} else if (piece instanceof Pawn) {
-				score += PAWN_VALUE;
+		/** Evaluates the position for the AI vs the
+		 * opponent, returning a score based on the
+		 *  material and number of available moves it has */
+		private double evaluatePosition(int ply) {
+			if (!MoveGenerator.hasLegalMoves(position)) {
+				return getTerminalScore(ply);
 			}
-
-			score += LEGAL_MOVES_VALUE * piece.getPseudoLegalMoves().size();
+			
+			int color = position.getSideToMove();
+			double score = getMaterial(position, color) - getMaterial(position, 1 - color);
+			score += LEGAL_MOVES_VALUE * (MoveGenerator.generatePseudoLegalMoves(position, color, leafMoves)
+					- MoveGenerator.generatePseudoLegalMoves(position, 1 - color, leafMoves));
+			return score;
 		}
 		
-		Player other = (game.getCurrent() == this) ? opponent : this ;
-		for (Piece piece : other.getPieces(game)) {
-			if (piece instanceof Queen) {
-				score -= QUEEN_VALUE;
-			} else if (piece instanceof Rook) {
-				score -= ROOK_VALUE;
-			} else if (piece instanceof Bishop) {
-				score -= BISHOP_VALUE;
-			} else if (piece instanceof Knight) {
-				score -= KNIGHT_VALUE;
-			} else if (piece instanceof Pawn) {
-				score -= PAWN_VALUE;
-			}
-
-			score -= LEGAL_MOVES_VALUE * piece.getPseudoLegalMoves().size();
+		/** Checkmate, the sooner the worse, or 0 for stalemate */
+		private double getTerminalScore(int ply) {
+			return (position.isInCheck()) ? -CHECK_MATE_VALUE + ply : 0;
 		}
-		
-		score *= whoToMove;
-		return score;
 	}
-}
\ No newline at end of file
+}
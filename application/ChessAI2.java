@@ -1,14 +1,15 @@
 package application;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.IOException;
+import java.nio.file.Paths;
 
-import application.pieces.Bishop;
-import application.pieces.Knight;
-import application.pieces.Pawn;
-import application.pieces.Piece;
-import application.pieces.Queen;
-import application.pieces.Rook;
+import application.engine.Move;
+import application.engine.ParallelSearch;
+import application.engine.PolyglotBook;
+import application.engine.Position;
+import application.engine.Search;
+import application.engine.TimeManager;
+import application.engine.TranspositionTable;
 
 
 /**
@@ -19,7 +20,11 @@ import application.pieces.Rook;
  *    and how many recursive steps forward it shall
  *    look for the best move. Implemented with a 
  *    miniMax algorithm which assumes best play from
- *    the opponent.
+ *    the opponent. The AI searches deeper and deeper
+ *    until its time for the move is used (see {@link Search}).
+ *    With pondering on, the AI keeps searching on the
+ *    opponent's time, assuming the opponent plays the
+ *    reply expected by its principal variation.
  *
  * @version 2.2   24 April 2017
  *
@@ -28,24 +33,54 @@ import application.pieces.Rook;
 
 public class ChessAI2 extends Player {
 
-	/** The number of steps the AI will look ahead */
-	public static final int RECURSION_DEPTH = 2;
+	/** The maximum number of steps the AI will look ahead */
+	public static final int MAX_DEPTH = Search.MAX_PLY;
 	
-	public static final double QUEEN_VALUE = 9.0, ROOK_VALUE = 5.0, BISHOP_VALUE = 3.0,
-			KNIGHT_VALUE = 3.0, PAWN_VALUE = 1.0, LEGAL_MOVES_VALUE = 0.05,
-			CHECK_VALUE = 5.0, CHECK_MATE_VALUE = 1000.0;
+	/** The time the AI uses per move (ms) when it has no clock */
+	public static final long DEFAULT_MOVE_TIME = 1000;
+	
+	/** The size of the transposition table in MB */
+	public static final int DEFAULT_HASH_SIZE = 16;
+	
+	/** Polyglot opening book, used when running with -Dchess.book=... */
+	public static final String BOOK_FILE = System.getProperty("chess.book");
 
 	private ChessMove move;
 	private Player opponent;
 	private ChessGame game;
+	private final TranspositionTable table = new TranspositionTable(DEFAULT_HASH_SIZE);
+	private final ParallelSearch parallelSearch = new ParallelSearch(table);
+	private final TimeManager time = new TimeManager();
+	private PolyglotBook book;
+	
+	private int maxDepth = MAX_DEPTH;
+	private long moveTime = DEFAULT_MOVE_TIME;
+	private long timeLeft = 0;
+	private long increment = 0;
+	private int movesToGo = 0;
+	
+	private boolean ponderingEnabled;
+	/** Whether a ponder search is waiting for the opponent's move.
+	 * Only cleared by a ponder hit or a cancel, so a ponder search
+	 * that ends early still waits for the opponent */
+	private boolean pondering;
+	/** Written on the AI thread and read on the game's thread */
+	private volatile int lastMove = Move.NONE;
+	/** Whether the search was cancelled, even before its clock started */
+	private boolean cancelled;
 	
-	private int movesCalculated = 0;
-	private int leafNodeMoves = 0;
-	private int betaCutoffs = 0;
 	private StopWatch clock = new StopWatch();
 
 	public ChessAI2() {
 		super("AI");
+		parallelSearch.setQueenPromotionsOnly(true);
+		if (BOOK_FILE != null) {
+			try {
+				book = new PolyglotBook(Paths.get(BOOK_FILE));
+			} catch (IOException e) {
+				System.out.println("Could not open the opening book: " + e.getMessage());
+			}
+		}
 	}
 
 	public void setup(ChessGame game) {
@@ -53,161 +88,203 @@ public class ChessAI2 extends Player {
 		opponent = (game.getWhite() == this) ? game.getBlack() : game.getWhite();
 	}
 
-	public void play() {
-		findBestMove();
-		move();
-	}
-
-	public void move() {
-		game.movePiece(move);
-	}
-
-	private void findBestMove() throws IllegalStateException {
-		//FOR DEBUGGING
-		movesCalculated = 0;
-		leafNodeMoves = 0;
-		clock.start();
-		
-		move = null;
-		System.out.println("Let me find a good move...");
-		
+	public void play() throws IllegalStateException {
 		if (game.getCurrent() != this) {
 			throw new IllegalStateException("It's not AIs turn, but trying to find best move.");
 		}
-		
-		double max = Double.NEGATIVE_INFINITY;
-		double score = 0;
-		
-		Collection<Piece> pieces = new ArrayList<>(getPieces(game));
-		for (Piece piece : pieces) {
-			for (ChessMove move : piece.getLegalMoves()) {
-				game.movePiece(move);
-				score = -negaMax(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, RECURSION_DEPTH);
-				piece.undoLastMove();
-				if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getCoordinates()[1] % 7 == 0) {
-					game.removePiece(move.getToSquare().getPiece());
-				}
-				if (move.capturesPiece()) {
-					game.undoRemovePiece(move.getTargetPiece());
-				} else if (move instanceof CastelingMove) {
-					((CastelingMove) move).getRook().undoLastMove();
-				}
-				game.undo();
-				
-				if (score > max) {
-					max = score;
-					this.move = move;
-				}
-				movesCalculated++;
-			}
+		startThinking();
+		move = game.toChessMove(findMove(game.getPosition()));
+		move();
+	}
+	
+	/** Readies the AI to search for its move. Called by the game's
+	 * thread before {@link #findMove(Position)} is run, so a cancel
+	 * that comes before the search has started its clock still
+	 * stops it */
+	public synchronized void startThinking() {
+		cancelled = false;
+	}
+	
+	/** Finds the move to play in the position, from the book or by
+	 * searching, without making it. Only reads the position, so it
+	 * may run on another thread than the game, given its own copy */
+	public int findMove(Position position) {
+		int bookMove = findBookMove(position);
+		lastMove = (bookMove != Move.NONE) ? bookMove : findBestMove(position);
+		return lastMove;
+	}
+	
+	/** Stops a search running on another thread, which then
+	 * returns the best move found so far. A ponder search
+	 * stops waiting for the opponent's move */
+	public synchronized void cancel() {
+		cancelled = true;
+		pondering = false;
+		time.stop();
+		notifyAll();
+	}
+	
+	/** Makes the AI search on the opponent's time (see {@link #ponder(Position)}) */
+	public void setPondering(boolean ponderingEnabled) {
+		this.ponderingEnabled = ponderingEnabled;
+	}
+	
+	public boolean isPonderingEnabled() {
+		return ponderingEnabled;
+	}
+	
+	/** The reply the AI expects to its last move, from its principal
+	 * variation, or {@link Move#NONE} if it does not know one */
+	public int getPonderMove() {
+		int[] principalVariation = parallelSearch.getPrincipalVariation();
+		if (lastMove == Move.NONE || principalVariation.length < 2 || principalVariation[0] != lastMove) {
+			return Move.NONE;
 		}
-		
-		if (move == null) { //Happens when the AI is checkmated in an amount of moves < rec. depth 
-			for (Piece piece : pieces) {
-				for (ChessMove move : piece.getLegalMoves()) {
-					this.move = move;
-					return;
+		return principalVariation[1];
+	}
+	
+	/** Starts the clock of a ponder search without a time limit.
+	 * Called by the game's thread before {@link #ponder(Position)} is
+	 * run, so a ponder hit that comes before the search has started
+	 * is not undone by it */
+	public synchronized void startPondering() {
+		cancelled = false;
+		pondering = true;
+		time.startInfinite();
+	}
+	
+	/** Searches the position after the expected reply until the
+	 * opponent moves. On a ponder hit ({@link #ponderHit()}) the
+	 * search goes on, keeping its tree and table, as the timed search
+	 * for the move, which is returned. On a miss the search is
+	 * cancelled, and its move is of no use */
+	public int ponder(Position position) {
+		System.out.println("Pondering...");
+		int move = search(position);
+		synchronized (this) {
+			//The search may end early, but the move is only known on a hit
+			while (pondering) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
 				}
 			}
 		}
-		//FOR DEBUGGING
-		clock.stop();
-		System.out.println("Betacutoffs:" + betaCutoffs);
-		System.out.println("Moves calculated: " + movesCalculated);
-		System.out.println("Leaf node moves: " + leafNodeMoves);
-		Double time = clock.getElapsedTimeSecs();
-		System.out.println("Tot calc. time: " + String.format("%.4f", time) + " sec.");
-		System.out.println("Calc. time per move: " + String.format("%.4f", (time * 1000000 / movesCalculated)) + " s.\n");
+		lastMove = move;
+		return move;
+	}
+	
+	/** The opponent played the expected reply: the ponder search
+	 * becomes a normal search, timed from now */
+	public synchronized void ponderHit() {
+		System.out.println("Ponder hit");
+		pondering = false;
+		startTimer();
+		notifyAll();
 	}
 
-	/** Finds the optimal move to make assuming the
-	 *  opponent plays the best moves by depth first
-	 *  searching through the possible move tree */
-	private double negaMax(double alpha, double beta, int recursionDepth) {
-		if (recursionDepth == 0) {
-			leafNodeMoves++;
-			return evaluatePosition();
+	public void move() {
+		game.movePiece(move);
+	}
+	
+	/** Resizes the transposition table, clearing it */
+	public void setHashSize(int megabytes) {
+		table.resize(megabytes);
+	}
+	
+	/** Makes the AI play the moves of the opening book while it has any,
+	 * or only search if the book is null */
+	public void setBook(PolyglotBook book) {
+		this.book = book;
+	}
+	
+	/** Sets the number of threads the AI searches with */
+	public void setThreads(int threads) {
+		parallelSearch.setThreads(threads);
+	}
+	
+	/** Makes the threads share the root moves between them,
+	 * instead of each searching the whole tree */
+	public void setRootSplitting(boolean rootSplitting) {
+		parallelSearch.setRootSplitting(rootSplitting);
+	}
+	
+	/** Limits how many steps the AI looks ahead */
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+	
+	/** Makes the AI use a fixed time (ms) per move */
+	public void setMoveTime(long moveTime) {
+		this.moveTime = moveTime;
+		this.timeLeft = 0;
+	}
+	
+	/** Makes the AI share the time left on its clock (ms) between
+	 * its moves. The increment (ms) is added to the clock after
+	 * each move, and movesToGo is the number of moves until the
+	 * next time control, 0 if there is none */
+	public void setTimeControl(long timeLeft, long increment, int movesToGo) {
+		this.timeLeft = timeLeft;
+		this.increment = increment;
+		this.movesToGo = movesToGo;
+	}
+
+	/** Picks a move from the opening book, or {@link Move#NONE} if it has none for the position */
+	private int findBookMove(Position position) {
+		if (book == null) {
+			return Move.NONE;
 		}
-		double score = 0;
-		
-		Collection<Piece> pieces = new ArrayList<>(game.getCurrent().getPieces(game));		
-		for (Piece piece : pieces) {
-			for (ChessMove move : piece.getLegalMoves()) {
-				game.movePiece(move);
-				score = -negaMax(-beta, -alpha, recursionDepth - 1);
-				piece.undoLastMove();
-				if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getCoordinates()[1] % 7 == 0) {
-					game.removePiece(move.getToSquare().getPiece());
-				}
-				if (move.capturesPiece()) {
-					game.undoRemovePiece(move.getTargetPiece());
-				} else if (move instanceof CastelingMove) {
-					((CastelingMove) move).getRook().undoLastMove();
-				}
-				game.undo();
-				
-				if (score >= beta) {
-					betaCutoffs++;
-					return beta;   // fail hard beta-cutoff
-				}
-			    if (score > alpha) {
-			    	alpha = score; // alpha acts like max in MiniMax
-			   }
-				movesCalculated++;
-			}
+		int bookMove = book.getMove(position);
+		if (bookMove != Move.NONE) {
+			System.out.println("Book move: " + Move.toString(bookMove) + "\n");
 		}
-		return alpha;
+		return bookMove;
+	}
+
+	private int findBestMove(Position position) {
+		System.out.println("Let me find a good move...");
+		startTimer();
+		return search(position);
 	}
 	
-	/** Evaluates the position for the AI vs the
-	 * opponent, returning a score based on the
-	 *  material and number of available moves it has */
-	private double evaluatePosition() {
-		int whoToMove = (game.getCurrent() == this) ? -1 : 1;
-		double score = 0;
-		
-		if (game.isCheckMate(game.getCurrent())) {
-			return -CHECK_MATE_VALUE;
-		} else if (game.isCheckMate((game.getCurrent() == this) ? opponent : this)) {
-			return CHECK_MATE_VALUE;
-		} else if (game.isStalemate(game.getCurrent())) {
-			return 0;
+	private synchronized void startTimer() {
+		if (timeLeft > 0) {
+			time.start(timeLeft, increment, movesToGo);
+		} else {
+			time.startMoveTime(moveTime);
 		}
-		
-		for (Piece piece : game.getCurrent().getPieces(game)) {
-			if (piece instanceof Queen) {
-				score += QUEEN_VALUE;
-			} else if (piece instanceof Rook) {
-				score += ROOK_VALUE;
-			} else if (piece instanceof Bishop) {
-				score += BISHOP_VALUE;
-			} else if (piece instanceof Knight) {
-				score += KNIGHT_VALUE;
-			} else if (piece instanceof Pawn) {
-				score += PAWN_VALUE;
-			}
-
-			score += LEGAL_MOVES_VALUE * piece.getPseudoLegalMoves().size();
+		if (cancelled) {
+			time.stop();
 		}
-		
-		Player other = (game.getCurrent() == this) ? opponent : this ;
-		for (Piece piece : other.getPieces(game)) {
-			if (piece instanceof Queen) {
-				score -= QUEEN_VALUE;
-			} else if (piece instanceof Rook) {
-				score -= ROOK_VALUE;
-			} else if (piece instanceof Bishop) {
-				score -= BISHOP_VALUE;
-			} else if (piece instanceof Knight) {
-				score -= KNIGHT_VALUE;
-			} else if (piece instanceof Pawn) {
-				score -= PAWN_VALUE;
-			}
+	}
 
-			score -= LEGAL_MOVES_VALUE * piece.getPseudoLegalMoves().size();
-		}
+	private int search(Position position) {
+		//FOR DEBUGGING
+		clock.start();
+		
+		int bestMove = parallelSearch.search(position, time, maxDepth);
 		
-		score *= whoToMove;
-		return score;
+		//FOR DEBUGGING
+		clock.stop();
+		Search search = parallelSearch.getMainSearch();
+		long movesCalculated = Math.max(parallelSearch.getNodes(), 1);
+		System.out.println("Depth reached: " + parallelSearch.getCompletedDepth());
+		System.out.println("Principal variation: " + Move.toString(parallelSearch.getPrincipalVariation()));
+		System.out.println("Betacutoffs:" + search.getBetaCutoffs());
+		System.out.println("Table cutoffs: " + search.getTableCutoffs());
+		System.out.println("Null move cutoffs: " + search.getNullMoveCutoffs());
+		System.out.println("Moves calculated: " + parallelSearch.getNodes()
+				+ " (" + parallelSearch.getThreads() + " threads)");
+		System.out.println("Leaf node moves: " + search.getLeafNodes());
+		System.out.println("Quiescence nodes: " + search.getQuiescenceNodes());
+		System.out.println("Delta prunes: " + search.getDeltaPrunes());
+		System.out.println("Pawn hash hits: " + String.format("%.1f", search.getPawnTable().getHitRate() * 100) + " %");
+		Double time = clock.getElapsedTimeSecs();
+		System.out.println("Tot calc. time: " + String.format("%.4f", time) + " sec.");
+		System.out.println("Calc. time per move: " + String.format("%.4f", (time * 1000000 / movesCalculated)) + " s.\n");
+		return bestMove;
 	}
-}
\ No newline at end of file
+}
@@ -4,6 +4,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Stack;
 
+import application.engine.Move;
+import application.engine.MoveGenerator;
+import application.engine.MoveList;
+import application.engine.Position;
+import application.engine.Zobrist;
 import application.pieces.*;
 
 /**
@@ -19,13 +24,26 @@ import application.pieces.*;
 
 public class ChessGame {
 	
+	/** Debug mode that checks the incrementally updated Zobrist key
+	 * against a key computed from scratch after each move and undo.
+	 * Enabled by running with -Dchess.verifyKeys=true */
+	public static final boolean VERIFY_KEYS = Boolean.getBoolean("chess.verifyKeys");
+	
 	private Player white;
 	private Player black;
 	private Player current;
 	
 	private ArrayList<ArrayList<Square>> board;
+	private Square[] squares;
 	private Piece selectedPiece;
 	
+	private Position position;
+	private boolean positionOutdated = true;
+	
+	//The engine's legal moves for each color, and the position they were generated for
+	private final MoveList[] legalMoves = {new MoveList(), new MoveList()};
+	private final Position[] legalMovesPosition = new Position[2];
+	
 	private Stack<ChessGameState> history;
 	
 	/** New game with new players */
@@ -50,7 +68,7 @@ public class ChessGame {
 		this.white = white;
 		this.black = black;
 		this.current = current;
-		this.board = board;
+		setBoard(board);
 		this.history = history;
 	}
 	
@@ -71,6 +89,7 @@ public class ChessGame {
 				board.get(y).add(new Square(x, y));
 			}
 		}
+		setBoard(board);
 		//Places the pieces on the board
 		for (int m = 0; m < 2; m++) {
 			
@@ -115,6 +134,19 @@ public class ChessGame {
 		}
 	}
 	
+	/** Sets the rows of squares, and keeps a flat array
+	 * of them for lookups by square index */
+	private void setBoard(ArrayList<ArrayList<Square>> board) {
+		this.board = board;
+		this.squares = new Square[64];
+		for (ArrayList<Square> row : board) {
+			for (Square square : row) {
+				squares[square.getIndex()] = square;
+			}
+		}
+		invalidatePosition();
+	}
+	
 	public Player getWhite() {
 		return white;
 	}
@@ -126,7 +158,140 @@ public class ChessGame {
 	/** Gets the square that corresponds to the given
 	 * coordinates */
 	public Square getSquare(int x, int y) {
-		return board.get(y).get(x);
+		return squares[(y << 3) | x];
+	}
+	
+	/** Gets the square with the given index (0-63) */
+	public Square getSquare(int index) {
+		return squares[index];
+	}
+	
+	/** The engine's color for the player,
+	 * {@link Position#WHITE} or {@link Position#BLACK} */
+	public int getColor(Player player) {
+		return (player == white) ? Position.WHITE : Position.BLACK;
+	}
+	
+	/** Gets the bitboard representation of the game,
+	 * rebuilding it if the board has changed since
+	 * it was last requested */
+	public Position getPosition() {
+		if (positionOutdated) {
+			position = createPosition();
+			positionOutdated = false;
+		}
+		return position;
+	}
+	
+	/** Replaces the bitboard representation with one that
+	 * is known to match the board */
+	private void setPosition(Position position) {
+		this.position = position;
+		this.positionOutdated = false;
+		if (VERIFY_KEYS) {
+			verifyZobristKey();
+		}
+	}
+	
+	/** The Zobrist key of the current position, covering the
+	 * pieces, whose turn it is, castling rights and en passant */
+	public long getZobristKey() {
+		return getPosition().getKey();
+	}
+	
+	/** Compares the incrementally updated Zobrist key with the key
+	 * computed from scratch ({@link Zobrist#compute(Position)}), and
+	 * that with the key of the position built from the board */
+	private void verifyZobristKey() throws IllegalStateException {
+		long key = Zobrist.compute(position);
+		if (key != position.getKey()) {
+			throw new IllegalStateException("Zobrist key of " + position.toFen()
+					+ " does not match the key computed from scratch");
+		}
+		Position board = createPosition();
+		if (key != Zobrist.compute(board)) {
+			throw new IllegalStateException("Position " + position.toFen()
+					+ " does not match the board " + board.toFen());
+		}
+	}
+	
+	/** Marks the bitboard representation as outdated.
+	 * Called whenever a piece changes square */
+	public void invalidatePosition() {
+		positionOutdated = true;
+	}
+	
+	/** Builds the bitboard representation of the board,
+	 * whose turn it is, castling rights and en passant */
+	private Position createPosition() {
+		Position position = new Position();
+		for (Square square : squares) {
+			if (square.hasPiece()) {
+				Piece piece = square.getPiece();
+				position.putPiece(square.getIndex(),
+						Position.makePiece(getColor(piece.getOwner()), piece.getType()));
+			}
+		}
+		position.setSideToMove(getColor(current));
+		position.setCastlingRights(getCastlingRights(white, Position.WHITE_KINGSIDE, Position.WHITE_QUEENSIDE)
+				| getCastlingRights(black, Position.BLACK_KINGSIDE, Position.BLACK_QUEENSIDE));
+		
+		if (!history.isEmpty() && history.peek().getLastMoveDone() != null) {
+			ChessMove lastMove = history.peek().getLastMoveDone();
+			Square from = lastMove.getFromSquare();
+			Square to = lastMove.getToSquare();
+			if (lastMove.getMovingPiece().getType() == Position.PAWN && Math.abs(to.getY() - from.getY()) == 2
+					&& lastMove.getMovingPiece().isOpponent(current)) {
+				position.setEnPassantSquare(((from.getY() + to.getY()) / 2 << 3) | from.getX());
+			}
+		}
+		position.updateCheckers();
+		return position;
+	}
+	
+	/** Encodes the move as an int for the engine's
+	 * {@link Position#makeMove(int)}. Pawns reaching the
+	 * last row are promoted to queens, as in movePiece */
+	public int encodeMove(ChessMove move) {
+		int from = move.getFromSquare().getIndex();
+		int to = move.getToSquare().getIndex();
+		
+		if (move instanceof CastelingMove) {
+			CastelingMove cMove = (CastelingMove) move;
+			from = cMove.getKingSquare().getIndex();
+			to = cMove.getKingTargetSquare().getIndex();
+			return Move.create(from, to, (to > from) ? Move.KING_CASTLE : Move.QUEEN_CASTLE);
+			
+		} else if (move instanceof EnPassantMove) {
+			return Move.create(from, to, Move.EN_PASSANT);
+			
+		} else if (move.getMovingPiece().getType() == Position.PAWN) {
+			if (move.getToSquare().getY() % 7 == 0) {
+				return Move.createPromotion(from, to, Position.QUEEN, move.capturesPiece());
+			} else if (Math.abs(to - from) == 16) {
+				return Move.create(from, to, Move.DOUBLE_PAWN_PUSH);
+			}
+		}
+		return Move.create(from, to, (move.capturesPiece()) ? Move.CAPTURE : Move.QUIET);
+	}
+	
+	/** The castling rights of the player, given that
+	 * neither the king nor the rook has moved */
+	private int getCastlingRights(Player player, int kingSide, int queenSide) {
+		int rights = 0;
+		int row = (player == white) ? 0 : 7;
+		Piece king = getSquare(4, row).getPiece();
+		if (king instanceof King && king.isOwnedBy(player) && !((King) king).isMoved()) {
+			Piece kingSideRook = getSquare(7, row).getPiece();
+			Piece queenSideRook = getSquare(0, row).getPiece();
+			if (kingSideRook instanceof Rook && kingSideRook.isOwnedBy(player) && !((Rook) kingSideRook).isMoved()) {
+				rights |= kingSide;
+			}
+			if (queenSideRook instanceof Rook && queenSideRook.isOwnedBy(player) && !((Rook) queenSideRook).isMoved()) {
+				rights |= queenSide;
+			}
+		}
+		return rights;
 	}
 	
 	public Player getCurrent() {
@@ -173,18 +338,38 @@ public class ChessGame {
 	public void undo() {
 		if (history.size() > 0) {
 			ChessGameState previous = history.pop();
+			undoMove(previous.getLastMoveDone());
 			this.white.setPieces(this, previous.getWhitePieces());
 			this.black.setPieces(this, previous.getBlackPieces());
 			this.current = previous.getCurrent();
-			this.board = previous.getBoard();
+			setBoard(previous.getBoard());
+			setPosition(previous.getPosition());
 			previous.setLegalMovesForPlayers();
 		}
 	}
 	
+	/** Puts the pieces changed by the move back on the
+	 * squares they had before it was made */
+	private void undoMove(ChessMove move) {
+		if (move instanceof CastelingMove) {
+			CastelingMove cMove = (CastelingMove) move;
+			cMove.getKing().undoLastMove();
+			cMove.getRook().undoLastMove();
+			return;
+		}
+		if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getY() % 7 == 0) {
+			move.getToSquare().setPiece(null); //Removes the queen the pawn was promoted to
+		}
+		move.getMovingPiece().undoLastMove();
+		if (move.capturesPiece()) {
+			move.getTargetPiece().undoLastMove();
+		}
+	}
+	
 	/** Pushes the current state to the history stack */
 	public void addGameStateToHistory(ChessMove move) {
 		history.push(new ChessGameState(board, white.getPieces(this),
-				black.getPieces(this), white, black, current, move));
+				black.getPieces(this), white, black, current, move, getPosition()));
 	}
 	
 	/** Overrides all parameters of the game with the ones
@@ -194,7 +379,8 @@ public class ChessGame {
 		this.white.setPieces(this, state.getWhitePieces());
 		this.black.setPieces(this, state.getBlackPieces());
 		this.current = state.getCurrent();
-		this.board = state.getBoard();
+		setBoard(state.getBoard());
+		setPosition(state.getPosition());
 		state.setLegalMovesForPlayers();
 	}
 	
@@ -255,7 +441,12 @@ public class ChessGame {
 		}
 	}
 	
+	/** Makes the move on the board and pieces. The engine's
+	 * position (and its Zobrist key) is updated incrementally
+	 * by making the same move on a copy of it */
 	public void movePiece(ChessMove move) {
+		Position next = new Position(getPosition());
+		next.makeMove(encodeMove(move));
 		addGameStateToHistory(move);
 		
 		if (move instanceof CastelingMove) {
@@ -274,7 +465,7 @@ public class ChessGame {
 			}
 			
 			//Promotion of pawn to queen
-			if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getCoordinates()[1] % 7 == 0) {
+			if (move.getMovingPiece() instanceof Pawn && move.getToSquare().getY() % 7 == 0) {
 				removePiece(move.getMovingPiece());
 				int queenNumber = 1;
 				Player owner = move.getMovingPiece().getOwner();
@@ -296,8 +487,10 @@ public class ChessGame {
 		}
 		
 		unselectPiece();
-		updateLegalMovesForPlayer(current);
+		Player mover = current;
 		switchCurrentPlayer();
+		setPosition(next);
+		updateLegalMovesForPlayer(mover);
 		updateLegalMovesForPlayer(current);
 	}
 	
@@ -309,75 +502,105 @@ public class ChessGame {
 	/** Switches whose turn it is */
 	public void switchCurrentPlayer() {
 		current = (current.equals(white)) ? black : white;
+		invalidatePosition();
 	}
 	
 	/** The game is stalemate if the player has no 
-	 * legal moves, but still isn't in check */
+	 * legal moves, but still isn't in check. Only the
+	 * player in turn can be out of moves */
 	public boolean isStalemate(Player player) {
-		//TODO 3-repetition rule (compare each piece placement in earlier chessgamestates)
-		for (Piece piece : player.getPieces(this)) {
-			if (piece.getLegalMoves().size() > 0) {
-				return false;
-			}
-		}
-		return !(getKing(current).isChecked());
+		Position position = getPosition();
+		return player == current && !position.isInCheck() && !MoveGenerator.hasLegalMoves(position);
 	}
 	
 	/** The game is checkmate if the player is in check
 	 * and has no legal moves (no moves available that gets
 	 * the player out of check) */
 	public boolean isCheckMate(Player player) {
-		for (Piece piece : player.getPieces(this)) {
-			if (piece.getLegalMoves().size() > 0) {
-				return false;
-			}
-		}
-		return (getKing(current).isChecked());
+		Position position = getPosition();
+		return player == current && position.isInCheck() && !MoveGenerator.hasLegalMoves(position);
+	}
+	
+	/** The game is drawn by stalemate, the third occurrence of
+	 * a position or fifty moves without a capture or pawn move.
+	 * Repetitions are found by the Zobrist keys of the positions
+	 * since the last capture or pawn move */
+	public boolean isDraw() {
+		Position position = getPosition();
+		return isStalemate(current) || position.getRepetitions() >= 2 || position.isFiftyMoveDraw();
 	}
 	
 	/** The game is over if a player is checkmated or
-	 * in case of stalemate */
+	 * in case of a draw */
 	public boolean isGameOver() {
-		return (isCheckMate(white) || isCheckMate(black) || isStalemate(current));
+		return (isCheckMate(white) || isCheckMate(black) || isDraw());
 	}
 	
 	public Player getWinner() {
-		if (!isGameOver() || isStalemate(current)) {
+		if (!isGameOver() || isDraw()) {
 			return null;
 		}
 		return (isCheckMate(white)) ? black : white;
 	}
 	
+	/** Checks if the move is legal, i.e. does not leave the movers
+	 * own king in check, by looking it up in the legal moves from
+	 * the engine's move generator. Neither the board nor the pieces
+	 * are changed */
 	public boolean testIfLegalMove(ChessMove move) {
-		boolean isLegalMove;
-		if (move instanceof CastelingMove) {
-			CastelingMove cMove = (CastelingMove) move;
-			cMove.getKing().setSquare(cMove.getKingTargetSquare());
-			cMove.getRook().setSquare(cMove.getRookTargetSquare());
-			isLegalMove = !move.getMovingPiece().getOwnKing().isChecked();
-			cMove.getKing().undoLastMove();
-			cMove.getRook().undoLastMove();
-			isLegalMove = !move.getMovingPiece().getOwnKing().isChecked();
-			
-		} else if (move instanceof EnPassantMove) {
-			EnPassantMove eMove = (EnPassantMove) move;
-			eMove.getMovingPiece().setSquare(eMove.getToSquare());
-			removePiece(eMove.getTargetPiece());
-			isLegalMove = !move.getMovingPiece().getOwnKing().isChecked();
-			eMove.getMovingPiece().undoLastMove();
-			undoRemovePiece(eMove.getTargetPiece());
-			
-		} else {
-			if (move.capturesPiece()) {
-				removePiece(move.getTargetPiece());
+		return getEngineLegalMoves(getColor(move.getMovingPiece().getOwner())).contains(encodeMove(move));
+	}
+	
+	/** The legal moves of the piece, converted from the engine's
+	 * int encoded legal moves. Pawns only promote to queens */
+	public Collection<ChessMove> getLegalMoves(Piece piece) {
+		MoveList moves = getEngineLegalMoves(getColor(piece.getOwner()));
+		int from = piece.getSquare().getIndex();
+		Collection<ChessMove> legalMoves = new ArrayList<>();
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			if (Move.from(move) == from && (!Move.isPromotion(move) || Move.promotionType(move) == Position.QUEEN)) {
+				legalMoves.add(toChessMove(move));
 			}
-			move.getMovingPiece().setSquare(move.getToSquare());
-			isLegalMove = !move.getMovingPiece().getOwnKing().isChecked();
-			move.getMovingPiece().undoLastMove();
-			if (move.capturesPiece()) {
-				undoRemovePiece(move.getTargetPiece());
+		}
+		return legalMoves;
+	}
+	
+	/** The engine's legal moves for the color in the current
+	 * position. The moves of the player who is not in turn are
+	 * generated as if it was that players turn */
+	private MoveList getEngineLegalMoves(int color) {
+		Position position = getPosition();
+		if (legalMovesPosition[color] != position) {
+			Position turnPosition = position;
+			if (position.getSideToMove() != color) {
+				turnPosition = new Position(position);
+				turnPosition.setSideToMove(color);
+				turnPosition.setEnPassantSquare(Position.NO_SQUARE);
+				turnPosition.updateCheckers();
 			}
+			legalMoves[color].generateLegalMoves(turnPosition);
+			legalMovesPosition[color] = position;
+		}
+		return legalMoves[color];
+	}
+	
+	/** Converts an int encoded move into a {@link ChessMove}
+	 * (or one of its subclasses) on the current board */
+	public ChessMove toChessMove(int move) {
+		Square from = getSquare(Move.from(move));
+		Square to = getSquare(Move.to(move));
+		Piece piece = from.getPiece();
+		
+		if (Move.isCastling(move)) {
+			boolean kingSide = Move.flags(move) == Move.KING_CASTLE;
+			Rook rook = (Rook) getSquare((kingSide) ? 7 : 0, from.getY()).getPiece();
+			return new CastelingMove(piece, (King) piece, rook, to, getSquare((kingSide) ? 5 : 3, from.getY()));
+			
+		} else if (Move.flags(move) == Move.EN_PASSANT) {
+			Square targetSquare = getSquare(to.getX(), from.getY());
+			return new EnPassantMove(piece, targetSquare.getPiece(), from, to, targetSquare);
 		}
-		return isLegalMove;
+		return new ChessMove(piece, from, to);
 	}
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import application.engine.Position;
 import application.pieces.Piece;
 
 /**
@@ -32,9 +33,10 @@ public class ChessGameState {
 	private final Player current;
 	
 	private final ChessMove lastMoveDone;
+	private final Position position;
 	
 	public ChessGameState(ArrayList<ArrayList<Square>> board, Collection<Piece> whitePieces, Collection<Piece> blackPieces,
-			Player white, Player black, Player current, ChessMove move) {
+			Player white, Player black, Player current, ChessMove move, Position position) {
 		
 		board.forEach(r -> this.board.add(new ArrayList<>(r)));
 		this.whitePieces.addAll(whitePieces);
@@ -45,6 +47,7 @@ public class ChessGameState {
 		this.black = black;
 		this.current = current;
 		this.lastMoveDone = move;
+		this.position = position;
 	}
 	
 	public Collection<Piece> getWhitePieces() {
@@ -85,6 +88,17 @@ public class ChessGameState {
 		return lastMoveDone;
 	}
 	
+	/** The engine's representation of the state. It is
+	 * not changed after the state is created */
+	public Position getPosition() {
+		return position;
+	}
+	
+	/** The Zobrist key that identifies the position */
+	public long getZobristKey() {
+		return position.getKey();
+	}
+	
 	public void setLegalMovesForPlayers() {
 		whitePieces.forEach(p -> p.setLegalMoves(whiteLegalMoves.get(p)));
 		blackPieces.forEach(p -> p.setLegalMoves(blackLegalMoves.get(p)));
@@ -2,8 +2,14 @@ package application;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import application.engine.Move;
+import application.engine.MoveList;
+import application.engine.Position;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -13,6 +19,8 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
@@ -24,6 +32,11 @@ import javafx.stage.Stage;
  *    can play chess against eachother, or against a
  *    {@link ChessAI}. It creates a GUI and connects
  *    input from the user to actions in a {@link ChessGame}.
+ *    The AI thinks on a background thread, so the window
+ *    stays responsive, and the board is locked until its
+ *    move is made. Ctrl+Z takes back a move and Ctrl+N
+ *    starts a new game, both cancelling the AI's search.
+ *    Against a human, the AI ponders while the human thinks.
  * 
  * @version 1.5   4 May 2017
  * 
@@ -31,6 +44,7 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
 
+	private static final String TITLE = "ChessFX by Claus";
 	
 	private Stage window;
 	private Scene startScene, gameScene, endScene;
@@ -41,6 +55,23 @@ public class Main extends Application {
 	
 	private boolean isWhiteAI, isBlackAI = false;
 	private boolean viewFromBlackPerspective = false;
+	
+	/** Runs the searches of the AIs, one at a time */
+	private final ExecutorService aiThread = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "AI");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/** The AI searching for a move, or null. The board is locked meanwhile */
+	private ChessAI2 thinkingAI;
+	
+	/** Counts the searches started, so the move of a cancelled search is ignored */
+	private volatile int searchNumber;
+	
+	/** The AI searching on the human player's time, or null, and the move it expects */
+	private ChessAI2 ponderingAI;
+	private int ponderMove;
 
 	@Override
 	public void start(Stage primaryStage) {
@@ -48,7 +79,7 @@ public class Main extends Application {
 			window = primaryStage;
 			createStartScene();
 			window.setScene(startScene);
-			window.setTitle("ChessFX by Claus");
+			window.setTitle(TITLE);
 			window.show();
 
 		} catch (Exception e) {
@@ -102,6 +133,7 @@ public class Main extends Application {
 			}
 		}
 		gameScene = new Scene(gameGrid, 800, 800);
+		gameScene.setOnKeyPressed(this::keyPressed);
 	}
 	
 	private void createEndScene() {
@@ -114,6 +146,7 @@ public class Main extends Application {
 		endSceneLayout.setBottom(new Label(winnerStr));
 		
 		endScene = new Scene(endSceneLayout, 800, 842);
+		endScene.setOnKeyPressed(this::keyPressed);
 	}
 	
 	private void startGame(String whiteName, String blackName) {
@@ -129,16 +162,19 @@ public class Main extends Application {
 				
 				if (!isBlackAI) { //When playing as black against the computer
 					viewFromBlackPerspective = true;
+					whiteAI.setPondering(true);
 				}
 			}
 			if (isBlackAI) {
 				blackAI = (ChessAI2) black;
 				blackAI.setup(game);
+				blackAI.setPondering(!isWhiteAI);
 			}
 			
 			createGameScene();
 			window.setScene(gameScene);
 			updateGridImages();
+			startAIIfInTurn();
 			
 		} else {
 			System.out.println("Fill out all players");
@@ -146,12 +182,16 @@ public class Main extends Application {
 	}
 	
 	private void stopGame() {
+		cancelThinking();
 		createEndScene();
 		window.setScene(endScene);
 		gameGrid.getChildren().forEach(pane -> pane.setOnMouseClicked(click -> System.out.println("Game over")));
 	}
 	
 	private void squareClicked(StackPane pane) {
+		if (thinkingAI != null) {
+			return; //The board is locked while the AI thinks
+		}
 		int x = Character.getNumericValue(pane.getId().charAt(0));
 		int y = 7 - Character.getNumericValue(pane.getId().charAt(1));
 		Square square = game.getSquare(x, y);
@@ -174,26 +214,160 @@ public class Main extends Application {
         
 		if (game.isGameOver()) {
 			stopGame();
-			
-		} else if (isWhiteAI && game.getCurrent() == whiteAI) {
-			whiteAI.play();
-			updateGrid(true);
-			if (game.isGameOver()) {
-				stopGame();
+		} else {
+			startAIIfInTurn();
+		}
+	}
+	
+	/** Lets the AI in turn, if any, search for its move on the AI
+	 * thread. The move is made on the JavaFX thread when found */
+	private void startAIIfInTurn() {
+		ChessAI2 ai = (isWhiteAI && game.getCurrent() == whiteAI) ? whiteAI
+				: (isBlackAI && game.getCurrent() == blackAI) ? blackAI : null;
+		if (ai == null) {
+			return;
+		}
+		if (ponderingAI == ai) {
+			ponderingAI = null;
+			if (game.getPosition().getLastMove() == ponderMove) {
+				//The ponder search goes on as the search for the move, and its move is made when found
+				thinkingAI = ai;
+				window.setTitle(TITLE + " - " + ai.getNickname() + " is thinking...");
+				ai.ponderHit();
+				return;
 			}
-			
-		} else if (isBlackAI && game.getCurrent() == blackAI) {
-            blackAI.play();
+			searchNumber++;
+			ai.cancel();
+		}
+		thinkingAI = ai;
+		int number = ++searchNumber;
+		Position position = new Position(game.getPosition());
+		window.setTitle(TITLE + " - " + ai.getNickname() + " is thinking...");
+		ai.startThinking();
+		aiThread.execute(() -> {
+			int move = Move.NONE;
+			try {
+				if (number == searchNumber) { //Not cancelled while waiting for the thread
+					move = ai.findMove(position);
+				}
+			} finally {
+				int found = move;
+				Platform.runLater(() -> aiMoveFound(number, found));
+			}
+		});
+	}
+	
+	/** Makes the move found by the AI, unless its search was cancelled */
+	private void aiMoveFound(int number, int move) {
+		if (number != searchNumber || thinkingAI == null) {
+			return; //Cancelled, or a ponder search that ended before the opponent moved
+		}
+		ChessAI2 ai = thinkingAI;
+		thinkingAI = null;
+		window.setTitle(TITLE);
+		if (move != Move.NONE) {
+			game.movePiece(game.toChessMove(move));
 			updateGrid(true);
-			if (game.isGameOver()) {
-				stopGame();
+		}
+		if (game.isGameOver()) {
+			stopGame();
+		} else {
+			startAIIfInTurn();
+			if (thinkingAI == null && ai != null && ai.isPonderingEnabled()) {
+				startPondering(ai);
 			}
 		}
 	}
 	
+	/** Lets the AI search the position after the reply it expects
+	 * on the AI thread, while the human player thinks. The board is
+	 * not locked. The search is continued if the reply is played,
+	 * and otherwise cancelled (see {@link #startAIIfInTurn()}) */
+	private void startPondering(ChessAI2 ai) {
+		int expected = ai.getPonderMove();
+		Position position = new Position(game.getPosition());
+		MoveList moves = new MoveList();
+		moves.generateLegalMoves(position);
+		if (expected == Move.NONE || !moves.contains(expected)) {
+			return;
+		}
+		position.makeMove(expected);
+		ponderingAI = ai;
+		ponderMove = expected;
+		int number = ++searchNumber;
+		ai.startPondering();
+		aiThread.execute(() -> {
+			int move = Move.NONE;
+			try {
+				if (number == searchNumber) {
+					move = ai.ponder(position);
+				}
+			} finally {
+				int found = move;
+				Platform.runLater(() -> aiMoveFound(number, found));
+			}
+		});
+	}
+	
+	/** Stops the search of the AI, or its pondering, and unlocks the board */
+	private void cancelThinking() {
+		if (thinkingAI != null) {
+			searchNumber++;
+			thinkingAI.cancel();
+			thinkingAI = null;
+			window.setTitle(TITLE);
+		}
+		if (ponderingAI != null) {
+			searchNumber++;
+			ponderingAI.cancel();
+			ponderingAI = null;
+		}
+	}
+	
+	private void keyPressed(KeyEvent key) {
+		if (key.isShortcutDown() && key.getCode() == KeyCode.Z && window.getScene() == gameScene) {
+			undo();
+		} else if (key.isShortcutDown() && key.getCode() == KeyCode.N) {
+			newGame();
+		}
+	}
+	
+	/** Takes back the last move. Against the AI, its move is taken
+	 * back as well, so it is the human player's turn again */
+	private void undo() {
+		cancelThinking();
+		if (game.getHistory().isEmpty()) {
+			return;
+		}
+		game.undo();
+		boolean aiInTurn = (isWhiteAI && game.getCurrent() == whiteAI) || (isBlackAI && game.getCurrent() == blackAI);
+		if (aiInTurn && !(isWhiteAI && isBlackAI) && !game.getHistory().isEmpty()) {
+			game.undo();
+		}
+		game.unselectPiece();
+		updateGrid(false);
+		if (!(isWhiteAI && isBlackAI)) {
+			startAIIfInTurn(); //When the AI made the first move
+		}
+	}
+	
+	/** Goes back to the start menu, leaving the game */
+	private void newGame() {
+		cancelThinking();
+		gameGrid = new GridPane();
+		viewFromBlackPerspective = false;
+		window.setScene(startScene);
+	}
+	
+	@Override
+	public void stop() {
+		cancelThinking();
+		aiThread.shutdownNow();
+	}
+	
  	private StackPane getPane(Square square) {
- 		int x = square.getCoordinates()[0];
- 		int y = 7 - square.getCoordinates()[1];
+ 		int x = square.getX();
+ 		int y = 7 - square.getY();
  		return (StackPane) gameGrid.getChildren().get(x + y * 8);
  	}
 
@@ -218,7 +392,7 @@ public class Main extends Application {
 		} else {
 			str = new String[1];
 		}
-		str[0] = ((square.getCoordinates()[0] + square.getCoordinates()[1]) % 2 == 1) ? "whiteSquare" : "blackSquare";
+		str[0] = ((square.getX() + square.getY()) % 2 == 1) ? "whiteSquare" : "blackSquare";
 		return str;
 	}
 
@@ -243,14 +417,14 @@ public class Main extends Application {
 		if (game.hasSelectedPiece()) {
 			//Show all legal moves for the piece
 			for (ChessMove move : game.getSelectedPiece().getLegalMoves()) {
-				String str = ((move.getToSquare().getCoordinates()[0] +
-						move.getToSquare().getCoordinates()[1]) % 2 == 1) ? "whiteSquare" : "blackSquare";
+				String str = ((move.getToSquare().getX() +
+						move.getToSquare().getY()) % 2 == 1) ? "whiteSquare" : "blackSquare";
 				getPane(move.getToSquare()).getChildren().set(0, new ImageView(getImage("application/pics/" + str + "Target.png")));
 			}
 		} if (pieceMoved) {
 			//Show where the piece was moved to
 			Square square = game.getHistory().peek().getLastMoveDone().getToSquare();
-			String str = ((square.getCoordinates()[0] + square.getCoordinates()[1]) % 2 == 1) ? "whiteSquare" : "blackSquare";
+			String str = ((square.getX() + square.getY()) % 2 == 1) ? "whiteSquare" : "blackSquare";
 			getPane(square).getChildren().set(0, new ImageView(getImage("application/pics/" + str + "Moved.png")));
 		}	
 	}
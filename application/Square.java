@@ -55,6 +55,20 @@ public class Square {
 		int[] coords = {x, y};
 		return coords;
 	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	/** The index of the square (0-63) on the bitboard
+	 * of a {@link application.engine.Position} */
+	public int getIndex() {
+		return (y << 3) | x;
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,194 @@
+package application.engine;
+
+/**
+ *    Precomputed attack tables. Knights, kings and pawns
+ *    use one bitboard per square, while rooks and bishops
+ *    use magic bitboards: the blockers on the rays from a
+ *    square are multiplied by a magic number, and the top
+ *    bits of the product index a table of attack sets.
+ *    The magic numbers were found by a trial and error
+ *    search with sparse random numbers.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class Attacks {
+
+	private static final long[] KNIGHT = new long[64];
+	private static final long[] KING = new long[64];
+	private static final long[][] PAWN = new long[2][64];
+
+	private static final long[] ROOK_MASK = new long[64];
+	private static final long[] ROOK_MAGIC = {
+			0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+			0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+			0x0400800040008021L, 0x0400400020005000L, 0x8240801000200080L, 0x8611001004200900L,
+			0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+			0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+			0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+			0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+			0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+			0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+			0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+			0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+			0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+			0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+			0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+			0x8044110480002441L, 0x2008110084402202L, 0x90806005090010C1L, 0x000420310A004A42L,
+			0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+	};
+	private static final int[] ROOK_SHIFT = new int[64];
+	private static final int[] ROOK_OFFSET = new int[64];
+
+	private static final long[] BISHOP_MASK = new long[64];
+	private static final long[] BISHOP_MAGIC = {
+			0x0045010808008680L, 0x2002080204004898L, 0x0210009A10400006L, 0x0824050200810200L,
+			0x0006061105004090L, 0x00010108C0000000L, 0x0814040282104004L, 0x0012012201106800L,
+			0x10823014100C1040L, 0x0080C2088802808CL, 0x0281108410404000L, 0x0101212041826200L,
+			0x0020141028221058L, 0x2201020202200202L, 0x000082A801482000L, 0x0000008401411044L,
+			0x0007103014300404L, 0x0002091110010100L, 0x42140012040C0808L, 0x0800808802004020L,
+			0x90C4004210140000L, 0x0800200900A01000L, 0x00D0400201108810L, 0x80820183814412A0L,
+			0x00A01008202202B4L, 0x01C2021A09500402L, 0x0084440208042400L, 0x800400400C090100L,
+			0xBA10040010802100L, 0xD182009006005000L, 0x5011021001009004L, 0x0020420200510400L,
+			0x0292104000468800L, 0x00043009091C0500L, 0x0280441000020025L, 0x0042820080080080L,
+			0x0440101010010040L, 0x1000900100808080L, 0x0108108120089800L, 0x0044010200012682L,
+			0xC002500420900400L, 0x0040482210710800L, 0x0002060024000200L, 0x0281020A44000800L,
+			0xA0021200A4000200L, 0x0001301000840840L, 0x2868500108444220L, 0x0004111041000200L,
+			0x8044020842080200L, 0x0000220104210200L, 0x0000021201044000L, 0x0000280884040028L,
+			0x4012114010858003L, 0x0000081004082B88L, 0x3892700508208002L, 0x00220A041B060400L,
+			0x0812020284014881L, 0x010434A282103100L, 0x0490400824020800L, 0x4A20002C00208800L,
+			0x000000A011020200L, 0x4002940A02482202L, 0x5100100202140406L, 0x02102000840540C1L
+	};
+	private static final int[] BISHOP_SHIFT = new int[64];
+	private static final int[] BISHOP_OFFSET = new int[64];
+
+	/** Attack sets of both rooks and bishops, indexed by offset + magic index */
+	private static final long[] SLIDING_ATTACKS = new long[102400 + 5248];
+
+	/** The squares between two squares on a line, and the whole line through them */
+	private static final long[][] BETWEEN = new long[64][64];
+	private static final long[][] LINE = new long[64][64];
+
+	private static final int[] KNIGHT_STEPS = {-2, -1, -1, -2, 1, -2, 2, -1, 2, 1, 1, 2, -1, 2, -2, 1};
+	private static final int[] KING_STEPS = {-1, -1, -1, 1, 1, 1, 1, -1, -1, 0, 1, 0, 0, 1, 0, -1};
+	private static final int[] BISHOP_STEPS = {-1, -1, -1, 1, 1, 1, 1, -1};
+	private static final int[] ROOK_STEPS = {-1, 0, 1, 0, 0, 1, 0, -1};
+
+	static {
+		for (int square = 0; square < 64; square++) {
+			KNIGHT[square] = slidingAttacks(square, KNIGHT_STEPS, -1L, false);
+			KING[square] = slidingAttacks(square, KING_STEPS, -1L, false);
+			long bit = 1L << square;
+			PAWN[Position.WHITE][square] = ((bit & ~Bitboards.FILE_A) << 7) | ((bit & ~Bitboards.FILE_H) << 9);
+			PAWN[Position.BLACK][square] = ((bit & ~Bitboards.FILE_A) >>> 9) | ((bit & ~Bitboards.FILE_H) >>> 7);
+		}
+		int offset = 0;
+		for (int square = 0; square < 64; square++) {
+			offset = initMagic(square, ROOK_STEPS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET, offset);
+		}
+		for (int square = 0; square < 64; square++) {
+			offset = initMagic(square, BISHOP_STEPS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET, offset);
+		}
+		for (int a = 0; a < 64; a++) {
+			for (int b = 0; b < 64; b++) {
+				long bits = (1L << a) | (1L << b);
+				if (a != b && (rook(a, 0L) & (1L << b)) != 0) {
+					BETWEEN[a][b] = rook(a, 1L << b) & rook(b, 1L << a);
+					LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | bits;
+				} else if (a != b && (bishop(a, 0L) & (1L << b)) != 0) {
+					BETWEEN[a][b] = bishop(a, 1L << b) & bishop(b, 1L << a);
+					LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | bits;
+				}
+			}
+		}
+	}
+
+	private Attacks() {
+	}
+
+	public static long knight(int square) {
+		return KNIGHT[square];
+	}
+
+	public static long king(int square) {
+		return KING[square];
+	}
+
+	/** The squares attacked by a pawn of the given color */
+	public static long pawn(int color, int square) {
+		return PAWN[color][square];
+	}
+
+	public static long rook(int square, long occupied) {
+		return SLIDING_ATTACKS[ROOK_OFFSET[square]
+				+ (int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+	}
+
+	public static long bishop(int square, long occupied) {
+		return SLIDING_ATTACKS[BISHOP_OFFSET[square]
+				+ (int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+	}
+
+	public static long queen(int square, long occupied) {
+		return rook(square, occupied) | bishop(square, occupied);
+	}
+
+	/** The squares strictly between the two squares if they are
+	 * on the same row, column or diagonal, otherwise none */
+	public static long between(int a, int b) {
+		return BETWEEN[a][b];
+	}
+
+	/** The whole line through the two squares if they are on the
+	 * same row, column or diagonal, otherwise none */
+	public static long line(int a, int b) {
+		return LINE[a][b];
+	}
+
+	/** Steps from the square in each of the given directions. Sliding
+	 * pieces continue until they reach an occupied square */
+	private static long slidingAttacks(int square, int[] steps, long occupied, boolean sliding) {
+		long attacks = 0;
+		int x = Bitboards.fileOf(square);
+		int y = Bitboards.rankOf(square);
+		for (int i = 0; i < steps.length; i += 2) {
+			int toX = x + steps[i];
+			int toY = y + steps[i + 1];
+			while (toX >= 0 && toX < 8 && toY >= 0 && toY < 8) {
+				long bit = 1L << Bitboards.square(toX, toY);
+				attacks |= bit;
+				if (!sliding || (occupied & bit) != 0) {
+					break;
+				}
+				toX += steps[i];
+				toY += steps[i + 1];
+			}
+		}
+		return attacks;
+	}
+
+	/** Fills in the part of the attack table for the square,
+	 * and returns the offset of the next free entry */
+	private static int initMagic(int square, int[] steps, long[] masks, long[] magics, int[] shifts,
+			int[] offsets, int offset) {
+		//The last square of each ray is never a blocker
+		long edges = ((Bitboards.RANK_1 | Bitboards.RANK_8) & ~Bitboards.rankMask(Bitboards.rankOf(square)))
+				| ((Bitboards.FILE_A | Bitboards.FILE_H) & ~Bitboards.fileMask(Bitboards.fileOf(square)));
+		long mask = slidingAttacks(square, steps, 0L, true) & ~edges;
+		int bits = Long.bitCount(mask);
+		masks[square] = mask;
+		shifts[square] = 64 - bits;
+		offsets[square] = offset;
+
+		//Every subset of the mask, with the attacks it allows
+		long subset = 0;
+		do {
+			int index = (int) ((subset * magics[square]) >>> (64 - bits));
+			SLIDING_ATTACKS[offset + index] = slidingAttacks(square, steps, subset, true);
+			subset = (subset - mask) & mask;
+		} while (subset != 0);
+		return offset + (1 << bits);
+	}
+}
@@ -0,0 +1,88 @@
+package application.engine;
+
+/**
+ *    Constants and helper methods for working with
+ *    64-bit bitboards. Bit n of a bitboard represents
+ *    square n, where square 0 is a1 (x = 0, y = 0) and
+ *    square 63 is h8 (x = 7, y = 7), the same coordinates
+ *    as used by {@link application.Square}.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class Bitboards {
+
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long FILE_H = FILE_A << 7;
+	public static final long RANK_1 = 0xFFL;
+	public static final long RANK_2 = RANK_1 << 8;
+	public static final long RANK_4 = RANK_1 << 24;
+	public static final long RANK_5 = RANK_1 << 32;
+	public static final long RANK_7 = RANK_1 << 48;
+	public static final long RANK_8 = RANK_1 << 56;
+
+	private Bitboards() {
+	}
+
+	/** The square index of the given coordinates */
+	public static int square(int x, int y) {
+		return (y << 3) | x;
+	}
+
+	public static int fileOf(int square) {
+		return square & 7;
+	}
+
+	public static int rankOf(int square) {
+		return square >>> 3;
+	}
+
+	public static long bit(int square) {
+		return 1L << square;
+	}
+
+	public static long fileMask(int file) {
+		return FILE_A << file;
+	}
+
+	public static long rankMask(int rank) {
+		return RANK_1 << (rank << 3);
+	}
+
+	/** Index of the lowest set bit */
+	public static int lsb(long bitboard) {
+		return Long.numberOfTrailingZeros(bitboard);
+	}
+
+	public static int count(long bitboard) {
+		return Long.bitCount(bitboard);
+	}
+
+	/** Algebraic name of the square, e.g. "e4" */
+	public static String squareName(int square) {
+		return "" + (char) ('a' + fileOf(square)) + (char) ('1' + rankOf(square));
+	}
+
+	/** Parses an algebraic square name, e.g. "e4" */
+	public static int parseSquare(String name) throws IllegalArgumentException {
+		if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h'
+				|| name.charAt(1) < '1' || name.charAt(1) > '8') {
+			throw new IllegalArgumentException("Not a square: " + name);
+		}
+		return square(name.charAt(0) - 'a', name.charAt(1) - '1');
+	}
+
+	/** Draws the bitboard as an 8x8 grid with rank 8 on top (for debugging) */
+	public static String toString(long bitboard) {
+		StringBuilder str = new StringBuilder();
+		for (int y = 7; y >= 0; y--) {
+			for (int x = 0; x < 8; x++) {
+				str.append(((bitboard >>> square(x, y)) & 1) != 0 ? "X " : ". ");
+			}
+			str.append("\n");
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,302 @@
+package application.engine;
+
+/**
+ *    Static evaluation of a position. Each piece has a value
+ *    for the middlegame and one for the endgame, which depend
+ *    on the square it stands on (piece-square tables). The
+ *    {@link Position} keeps the sum of both for each side up
+ *    to date as pieces are moved, together with the game
+ *    phase, found from the pieces left on the board. The two
+ *    sums are blended by the phase (tapered evaluation), so
+ *    the evaluation moves smoothly from the middlegame values
+ *    to the endgame values as pieces are traded. Mobility is
+ *    counted from the squares attacked by the pieces. The
+ *    pawn structure (doubled, isolated, backward and passed
+ *    pawns) is cached in a {@link PawnHashTable}.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class Evaluation {
+
+	/** Piece values in the middlegame and the endgame, by type */
+	private static final int[] MIDGAME_VALUE = {100, 300, 320, 500, 900, 0};
+	private static final int[] ENDGAME_VALUE = {120, 280, 310, 520, 900, 0};
+
+	/** Weight of each piece type in the game phase. All pieces on the board gives MAX_PHASE */
+	private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+	public static final int MAX_PHASE = 24;
+
+	/** Value per square attacked by a knight, bishop, rook or queen */
+	public static final int MOBILITY_VALUE = 4;
+
+	/** Pawn structure terms, in the middlegame and the endgame */
+	private static final int DOUBLED_MIDGAME = -10, DOUBLED_ENDGAME = -20;
+	private static final int ISOLATED_MIDGAME = -10, ISOLATED_ENDGAME = -15;
+	private static final int BACKWARD_MIDGAME = -8, BACKWARD_ENDGAME = -10;
+
+	/** Bonus of a passed pawn by its rank, counted from its own side */
+	private static final int[] PASSED_MIDGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+	private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 55, 80, 110, 0};
+
+	/** Endgame value per step the own king is closer to the square in
+	 * front of a passed pawn than the opponent's king */
+	private static final int PASSED_KING_DISTANCE = 5;
+
+	//Piece-square tables for white, from a8 to h1 as the board is seen
+	private static final int[] PAWN_MIDGAME = {
+			 0,  0,  0,  0,  0,  0,  0,  0,
+			50, 50, 50, 50, 50, 50, 50, 50,
+			10, 10, 20, 30, 30, 20, 10, 10,
+			 5,  5, 10, 25, 25, 10,  5,  5,
+			 0,  0,  0, 20, 20,  0,  0,  0,
+			 5, -5,-10,  0,  0,-10, -5,  5,
+			 5, 10, 10,-20,-20, 10, 10,  5,
+			 0,  0,  0,  0,  0,  0,  0,  0
+	};
+	private static final int[] PAWN_ENDGAME = {
+			 0,  0,  0,  0,  0,  0,  0,  0,
+			80, 80, 80, 80, 80, 80, 80, 80,
+			50, 50, 50, 50, 50, 50, 50, 50,
+			30, 30, 30, 30, 30, 30, 30, 30,
+			15, 15, 15, 15, 15, 15, 15, 15,
+			 5,  5,  5,  5,  5,  5,  5,  5,
+			 0,  0,  0,  0,  0,  0,  0,  0,
+			 0,  0,  0,  0,  0,  0,  0,  0
+	};
+	private static final int[] KNIGHT_TABLE = {
+			-50,-40,-30,-30,-30,-30,-40,-50,
+			-40,-20,  0,  0,  0,  0,-20,-40,
+			-30,  0, 10, 15, 15, 10,  0,-30,
+			-30,  5, 15, 20, 20, 15,  5,-30,
+			-30,  0, 15, 20, 20, 15,  0,-30,
+			-30,  5, 10, 15, 15, 10,  5,-30,
+			-40,-20,  0,  5,  5,  0,-20,-40,
+			-50,-40,-30,-30,-30,-30,-40,-50
+	};
+	private static final int[] BISHOP_TABLE = {
+			-20,-10,-10,-10,-10,-10,-10,-20,
+			-10,  0,  0,  0,  0,  0,  0,-10,
+			-10,  0,  5, 10, 10,  5,  0,-10,
+			-10,  5,  5, 10, 10,  5,  5,-10,
+			-10,  0, 10, 10, 10, 10,  0,-10,
+			-10, 10, 10, 10, 10, 10, 10,-10,
+			-10,  5,  0,  0,  0,  0,  5,-10,
+			-20,-10,-10,-10,-10,-10,-10,-20
+	};
+	private static final int[] ROOK_MIDGAME = {
+			 0,  0,  0,  0,  0,  0,  0,  0,
+			 5, 10, 10, 10, 10, 10, 10,  5,
+			-5,  0,  0,  0,  0,  0,  0, -5,
+			-5,  0,  0,  0,  0,  0,  0, -5,
+			-5,  0,  0,  0,  0,  0,  0, -5,
+			-5,  0,  0,  0,  0,  0,  0, -5,
+			-5,  0,  0,  0,  0,  0,  0, -5,
+			 0,  0,  0,  5,  5,  0,  0,  0
+	};
+	private static final int[] ROOK_ENDGAME = new int[64];
+	private static final int[] QUEEN_TABLE = {
+			-20,-10,-10, -5, -5,-10,-10,-20,
+			-10,  0,  0,  0,  0,  0,  0,-10,
+			-10,  0,  5,  5,  5,  5,  0,-10,
+			 -5,  0,  5,  5,  5,  5,  0, -5,
+			  0,  0,  5,  5,  5,  5,  0, -5,
+			-10,  5,  5,  5,  5,  5,  0,-10,
+			-10,  0,  5,  0,  0,  0,  0,-10,
+			-20,-10,-10, -5, -5,-10,-10,-20
+	};
+	private static final int[] KING_MIDGAME = {
+			-30,-40,-40,-50,-50,-40,-40,-30,
+			-30,-40,-40,-50,-50,-40,-40,-30,
+			-30,-40,-40,-50,-50,-40,-40,-30,
+			-30,-40,-40,-50,-50,-40,-40,-30,
+			-20,-30,-30,-40,-40,-30,-30,-20,
+			-10,-20,-20,-20,-20,-20,-20,-10,
+			 20, 20,  0,  0,  0,  0, 20, 20,
+			 20, 30, 10,  0,  0, 10, 30, 20
+	};
+	private static final int[] KING_ENDGAME = {
+			-50,-40,-30,-20,-20,-30,-40,-50,
+			-30,-20,-10,  0,  0,-10,-20,-30,
+			-30,-10, 20, 30, 30, 20,-10,-30,
+			-30,-10, 30, 40, 40, 30,-10,-30,
+			-30,-10, 30, 40, 40, 30,-10,-30,
+			-30,-10, 20, 30, 30, 20,-10,-30,
+			-30,-30,  0,  0,  0,  0,-30,-30,
+			-50,-30,-30,-30,-30,-30,-30,-50
+	};
+
+	/** Value and square bonus of each piece code on each square */
+	private static final int[][] MIDGAME = new int[16][64];
+	private static final int[][] ENDGAME = new int[16][64];
+
+	/** By color and square: the squares in front of a pawn on its file,
+	 * the squares an enemy pawn must be on to stop it from passing, and
+	 * the squares of own pawns that can support it as it advances */
+	private static final long[][] FRONT = new long[2][64];
+	private static final long[][] PASSED = new long[2][64];
+	private static final long[][] SUPPORT = new long[2][64];
+	private static final long[] ADJACENT_FILES = new long[8];
+
+	static {
+		int[][] midgameTables = {PAWN_MIDGAME, KNIGHT_TABLE, BISHOP_TABLE, ROOK_MIDGAME, QUEEN_TABLE, KING_MIDGAME};
+		int[][] endgameTables = {PAWN_ENDGAME, KNIGHT_TABLE, BISHOP_TABLE, ROOK_ENDGAME, QUEEN_TABLE, KING_ENDGAME};
+		for (int type = Position.PAWN; type <= Position.KING; type++) {
+			for (int square = 0; square < 64; square++) {
+				//The tables are written from a8, and black sees the board upside down
+				int white = Position.makePiece(Position.WHITE, type);
+				int black = Position.makePiece(Position.BLACK, type);
+				MIDGAME[white][square] = MIDGAME_VALUE[type] + midgameTables[type][square ^ 56];
+				ENDGAME[white][square] = ENDGAME_VALUE[type] + endgameTables[type][square ^ 56];
+				MIDGAME[black][square] = MIDGAME_VALUE[type] + midgameTables[type][square];
+				ENDGAME[black][square] = ENDGAME_VALUE[type] + endgameTables[type][square];
+			}
+		}
+		for (int file = 0; file < 8; file++) {
+			ADJACENT_FILES[file] = ((file > 0) ? Bitboards.fileMask(file - 1) : 0)
+					| ((file < 7) ? Bitboards.fileMask(file + 1) : 0);
+		}
+		for (int square = 0; square < 64; square++) {
+			int file = Bitboards.fileOf(square);
+			int rank = Bitboards.rankOf(square);
+			long file3 = Bitboards.fileMask(file) | ADJACENT_FILES[file];
+			for (int y = 0; y < 8; y++) {
+				if (y > rank) {
+					FRONT[Position.WHITE][square] |= Bitboards.fileMask(file) & Bitboards.rankMask(y);
+					PASSED[Position.WHITE][square] |= file3 & Bitboards.rankMask(y);
+				} else {
+					SUPPORT[Position.WHITE][square] |= ADJACENT_FILES[file] & Bitboards.rankMask(y);
+				}
+				if (y < rank) {
+					FRONT[Position.BLACK][square] |= Bitboards.fileMask(file) & Bitboards.rankMask(y);
+					PASSED[Position.BLACK][square] |= file3 & Bitboards.rankMask(y);
+				} else {
+					SUPPORT[Position.BLACK][square] |= ADJACENT_FILES[file] & Bitboards.rankMask(y);
+				}
+			}
+		}
+	}
+
+	private Evaluation() {
+	}
+
+	/** The middlegame value of the piece on the square */
+	public static int midgame(int piece, int square) {
+		return MIDGAME[piece][square];
+	}
+
+	/** The endgame value of the piece on the square */
+	public static int endgame(int piece, int square) {
+		return ENDGAME[piece][square];
+	}
+
+	/** How much the piece counts in the game phase */
+	public static int phase(int piece) {
+		return PHASE[Position.typeOf(piece)];
+	}
+
+	/** Evaluates the position for the side to move, in centipawns.
+	 * The pawn structure is looked up in the table, and evaluated
+	 * and stored if it is not found */
+	public static int evaluate(Position position, PawnHashTable pawnTable) {
+		int color = position.getSideToMove();
+		int midgame = position.getMidgameScore(Position.WHITE) - position.getMidgameScore(Position.BLACK);
+		int endgame = position.getEndgameScore(Position.WHITE) - position.getEndgameScore(Position.BLACK);
+
+		long pawnKey = position.getPawnKey();
+		int index = pawnTable.probe(pawnKey);
+		if (index < 0) {
+			index = evaluatePawns(position, pawnTable, pawnKey);
+		}
+		midgame += pawnTable.getMidgame(index);
+		endgame += pawnTable.getEndgame(index) + evaluatePassedPawns(position, pawnTable.getPassedPawns(index));
+		if (color == Position.BLACK) {
+			midgame = -midgame;
+			endgame = -endgame;
+		}
+		int phase = Math.min(position.getPhase(), MAX_PHASE);
+		int score = (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+		return score + MOBILITY_VALUE * (getMobility(position, color) - getMobility(position, 1 - color));
+	}
+
+	/** Evaluates the pawn structure and stores it in the table,
+	 * returning its index. The scores are for white */
+	private static int evaluatePawns(Position position, PawnHashTable pawnTable, long pawnKey) {
+		int midgame = 0, endgame = 0;
+		long passed = 0;
+		for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+			int sign = (color == Position.WHITE) ? 1 : -1;
+			long ownPawns = position.pieces(color, Position.PAWN);
+			long enemyPawns = position.pieces(1 - color, Position.PAWN);
+			for (long pawns = ownPawns; pawns != 0; pawns &= pawns - 1) {
+				int square = Long.numberOfTrailingZeros(pawns);
+				int file = Bitboards.fileOf(square);
+				if ((FRONT[color][square] & ownPawns) != 0) {
+					midgame += sign * DOUBLED_MIDGAME;
+					endgame += sign * DOUBLED_ENDGAME;
+				}
+				if ((ADJACENT_FILES[file] & ownPawns) == 0) {
+					midgame += sign * ISOLATED_MIDGAME;
+					endgame += sign * ISOLATED_ENDGAME;
+				} else if ((SUPPORT[color][square] & ownPawns) == 0) {
+					//No pawn can support it, and an enemy pawn keeps it from advancing
+					int stop = square + ((color == Position.WHITE) ? 8 : -8);
+					if ((Attacks.pawn(color, stop) & enemyPawns) != 0) {
+						midgame += sign * BACKWARD_MIDGAME;
+						endgame += sign * BACKWARD_ENDGAME;
+					}
+				}
+				if ((PASSED[color][square] & enemyPawns) == 0 && (FRONT[color][square] & ownPawns) == 0) {
+					int rank = (color == Position.WHITE) ? Bitboards.rankOf(square) : 7 - Bitboards.rankOf(square);
+					midgame += sign * PASSED_MIDGAME[rank];
+					endgame += sign * PASSED_ENDGAME[rank];
+					passed |= 1L << square;
+				}
+			}
+		}
+		return pawnTable.store(pawnKey, midgame, endgame, passed);
+	}
+
+	/** Rewards passed pawns whose own king is closer to the
+	 * square in front of them than the opponent's king. For white */
+	private static int evaluatePassedPawns(Position position, long passed) {
+		int endgame = 0;
+		for (; passed != 0; passed &= passed - 1) {
+			int square = Long.numberOfTrailingZeros(passed);
+			int color = Position.colorOf(position.pieceAt(square));
+			int front = square + ((color == Position.WHITE) ? 8 : -8);
+			int distance = getDistance(position.kingSquare(1 - color), front)
+					- getDistance(position.kingSquare(color), front);
+			endgame += ((color == Position.WHITE) ? 1 : -1) * PASSED_KING_DISTANCE * distance;
+		}
+		return endgame;
+	}
+
+	/** The number of king steps between the squares */
+	private static int getDistance(int a, int b) {
+		return Math.max(Math.abs(Bitboards.fileOf(a) - Bitboards.fileOf(b)),
+				Math.abs(Bitboards.rankOf(a) - Bitboards.rankOf(b)));
+	}
+
+	/** The number of squares attacked by the knights, bishops, rooks
+	 * and queens of the color, not counting those of its own pieces */
+	public static int getMobility(Position position, int color) {
+		long occupied = position.occupied();
+		long targets = ~position.colorPieces(color);
+		int mobility = 0;
+		for (long knights = position.pieces(color, Position.KNIGHT); knights != 0; knights &= knights - 1) {
+			mobility += Long.bitCount(Attacks.knight(Long.numberOfTrailingZeros(knights)) & targets);
+		}
+		long diagonal = position.pieces(color, Position.BISHOP) | position.pieces(color, Position.QUEEN);
+		for (; diagonal != 0; diagonal &= diagonal - 1) {
+			mobility += Long.bitCount(Attacks.bishop(Long.numberOfTrailingZeros(diagonal), occupied) & targets);
+		}
+		long straight = position.pieces(color, Position.ROOK) | position.pieces(color, Position.QUEEN);
+		for (; straight != 0; straight &= straight - 1) {
+			mobility += Long.bitCount(Attacks.rook(Long.numberOfTrailingZeros(straight), occupied) & targets);
+		}
+		return mobility;
+	}
+}
@@ -0,0 +1,80 @@
+package application.engine;
+
+/**
+ *    Helper methods for moves encoded as ints, as used
+ *    by {@link Position#makeMove(int)}. The lowest 6 bits
+ *    hold the from square, the next 6 bits the to square
+ *    and the 4 bits above those the move flags.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class Move {
+
+	public static final int NONE = 0;
+
+	public static final int QUIET = 0, DOUBLE_PAWN_PUSH = 1, KING_CASTLE = 2, QUEEN_CASTLE = 3,
+			CAPTURE = 4, EN_PASSANT = 5, PROMOTION = 8, PROMOTION_CAPTURE = 12;
+
+	private Move() {
+	}
+
+	public static int create(int from, int to, int flags) {
+		return from | (to << 6) | (flags << 12);
+	}
+
+	/** A promotion to the given piece type (knight to queen) */
+	public static int createPromotion(int from, int to, int type, boolean capture) {
+		return create(from, to, ((capture) ? PROMOTION_CAPTURE : PROMOTION) | (type - Position.KNIGHT));
+	}
+
+	public static int from(int move) {
+		return move & 0x3F;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 0x3F;
+	}
+
+	public static int flags(int move) {
+		return (move >>> 12) & 0xF;
+	}
+
+	public static boolean isCapture(int move) {
+		return (move & (CAPTURE << 12)) != 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return (move & (PROMOTION << 12)) != 0;
+	}
+
+	public static boolean isCastling(int move) {
+		int flags = flags(move);
+		return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+	}
+
+	/** The piece type a pawn is promoted to */
+	public static int promotionType(int move) {
+		return Position.KNIGHT + (flags(move) & 3);
+	}
+
+	/** The move in coordinate notation, e.g. "e2e4" or "e7e8q" */
+	public static String toString(int move) {
+		String str = Bitboards.squareName(from(move)) + Bitboards.squareName(to(move));
+		if (isPromotion(move)) {
+			str += "nbrq".charAt(promotionType(move) - Position.KNIGHT);
+		}
+		return str;
+	}
+
+	/** The moves in coordinate notation, separated by spaces */
+	public static String toString(int[] moves) {
+		StringBuilder str = new StringBuilder();
+		for (int move : moves) {
+			str.append((str.length() > 0) ? " " : "").append(toString(move));
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,360 @@
+package application.engine;
+
+import static application.engine.Position.*;
+
+/**
+ *    Generates the moves available in a {@link Position}
+ *    as int encoded moves (see {@link Move}). The moves are
+ *    written into an array supplied by the caller, and the
+ *    number of moves generated is returned, so no objects
+ *    are allocated while generating.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class MoveGenerator {
+
+	/** Upper bound on the number of moves in any position */
+	public static final int MAX_MOVES = 256;
+
+	private MoveGenerator() {
+	}
+
+	/** Generates the legal moves for the side to move. The pinned
+	 * pieces and the squares that resolve a check are found once,
+	 * so only legal moves are generated and the position is never
+	 * changed while generating */
+	public static int generateLegalMoves(Position position, int[] moves) {
+		return generateLegalMoves(position, moves, false);
+	}
+	
+	/** Generates the legal captures and promotions for the side
+	 * to move, the moves searched by the quiescence search */
+	public static int generateLegalCaptures(Position position, int[] moves) {
+		return generateLegalMoves(position, moves, true);
+	}
+	
+	private static int generateLegalMoves(Position position, int[] moves, boolean capturesOnly) {
+		int us = position.getSideToMove();
+		int them = us ^ 1;
+		long own = position.colorPieces(us);
+		long enemy = position.colorPieces(them);
+		long occupied = own | enemy;
+		int king = position.kingSquare(us);
+		long checkers = position.getCheckers();
+		int count = 0;
+
+		//The king may not step onto an attacked square, also not one behind it on a checking ray
+		long occupiedWithoutKing = occupied ^ (1L << king);
+		long kingTargets = Attacks.king(king) & ((capturesOnly) ? enemy : ~own);
+		for (long targets = kingTargets; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			if (position.attackersTo(to, them, occupiedWithoutKing) == 0) {
+				moves[count++] = Move.create(king, to, ((enemy >>> to) & 1) != 0 ? Move.CAPTURE : Move.QUIET);
+			}
+		}
+		if (Long.bitCount(checkers) > 1) {
+			return count; //Double check, only the king can move
+		}
+
+		//Squares that capture the checking piece or block the check
+		long checkMask = (checkers == 0) ? -1L
+				: checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+		long pinned = getPinnedPieces(position, us, king, occupied);
+		long targetMask = ((capturesOnly) ? enemy : ~own) & checkMask;
+
+		for (long knights = position.pieces(us, KNIGHT) & ~pinned; knights != 0; knights &= knights - 1) {
+			int from = Long.numberOfTrailingZeros(knights);
+			count = addMoves(from, Attacks.knight(from) & targetMask, enemy, moves, count);
+		}
+		long queens = position.pieces(us, QUEEN);
+		for (long bishops = position.pieces(us, BISHOP) | queens; bishops != 0; bishops &= bishops - 1) {
+			int from = Long.numberOfTrailingZeros(bishops);
+			long targets = Attacks.bishop(from, occupied) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			count = addMoves(from, targets, enemy, moves, count);
+		}
+		for (long rooks = position.pieces(us, ROOK) | queens; rooks != 0; rooks &= rooks - 1) {
+			int from = Long.numberOfTrailingZeros(rooks);
+			long targets = Attacks.rook(from, occupied) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			count = addMoves(from, targets, enemy, moves, count);
+		}
+
+		long pawns = position.pieces(us, PAWN);
+		count = addPawnMoves(us, pawns & ~pinned, enemy, occupied, checkMask, capturesOnly, moves, count);
+		for (long pinnedPawns = pawns & pinned; pinnedPawns != 0; pinnedPawns &= pinnedPawns - 1) {
+			int from = Long.numberOfTrailingZeros(pinnedPawns);
+			count = addPawnMoves(us, 1L << from, enemy, occupied, checkMask & Attacks.line(king, from), capturesOnly,
+					moves, count);
+		}
+		count = addLegalEnPassant(position, us, king, occupied, moves, count);
+
+		if (checkers == 0 && !capturesOnly) {
+			count = addCastlingMoves(position, us, moves, count);
+		}
+		return count;
+	}
+
+	/** Whether the side to move has any legal move. Stops at the
+	 * first piece found to have one, and only looks at the target
+	 * squares, so no moves are made. Together with the in-check
+	 * flag this tells checkmate and stalemate apart from other
+	 * positions much faster than generating all the moves */
+	public static boolean hasLegalMoves(Position position) {
+		int us = position.getSideToMove();
+		int them = us ^ 1;
+		long own = position.colorPieces(us);
+		long enemy = position.colorPieces(them);
+		long occupied = own | enemy;
+		int king = position.kingSquare(us);
+		long checkers = position.getCheckers();
+
+		//Castling is not needed, as the king may then also step to the square next to it
+		long occupiedWithoutKing = occupied ^ (1L << king);
+		for (long targets = Attacks.king(king) & ~own; targets != 0; targets &= targets - 1) {
+			if (position.attackersTo(Long.numberOfTrailingZeros(targets), them, occupiedWithoutKing) == 0) {
+				return true;
+			}
+		}
+		if (Long.bitCount(checkers) > 1) {
+			return false;
+		}
+
+		long checkMask = (checkers == 0) ? -1L
+				: checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+		long pinned = getPinnedPieces(position, us, king, occupied);
+		long targetMask = ~own & checkMask;
+
+		for (long knights = position.pieces(us, KNIGHT) & ~pinned; knights != 0; knights &= knights - 1) {
+			if ((Attacks.knight(Long.numberOfTrailingZeros(knights)) & targetMask) != 0) {
+				return true;
+			}
+		}
+		long pawns = position.pieces(us, PAWN);
+		if ((getPawnTargets(us, pawns & ~pinned, enemy, occupied) & checkMask) != 0) {
+			return true;
+		}
+		long queens = position.pieces(us, QUEEN);
+		for (long bishops = position.pieces(us, BISHOP) | queens; bishops != 0; bishops &= bishops - 1) {
+			int from = Long.numberOfTrailingZeros(bishops);
+			long targets = Attacks.bishop(from, occupied) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			if (targets != 0) {
+				return true;
+			}
+		}
+		for (long rooks = position.pieces(us, ROOK) | queens; rooks != 0; rooks &= rooks - 1) {
+			int from = Long.numberOfTrailingZeros(rooks);
+			long targets = Attacks.rook(from, occupied) & targetMask;
+			if ((pinned & (1L << from)) != 0) {
+				targets &= Attacks.line(king, from);
+			}
+			if (targets != 0) {
+				return true;
+			}
+		}
+		for (long pinnedPawns = pawns & pinned; pinnedPawns != 0; pinnedPawns &= pinnedPawns - 1) {
+			long pawn = pinnedPawns & -pinnedPawns;
+			if ((getPawnTargets(us, pawn, enemy, occupied) & checkMask
+					& Attacks.line(king, Long.numberOfTrailingZeros(pawn))) != 0) {
+				return true;
+			}
+		}
+		return getLegalEnPassantPawns(position, us, king, occupied) != 0;
+	}
+
+	/** The squares the pawns can move to by pushes and captures,
+	 * en passant not included */
+	private static long getPawnTargets(int color, long pawns, long enemy, long occupied) {
+		int up = (color == WHITE) ? 8 : -8;
+		long singlePushes = shift(pawns, up) & ~occupied;
+		long doublePushes = shift(singlePushes & ((color == WHITE) ? Bitboards.RANK_1 << 16 : Bitboards.RANK_1 << 40), up)
+				& ~occupied;
+		long captures = shift(pawns & ~Bitboards.FILE_A, up - 1) | shift(pawns & ~Bitboards.FILE_H, up + 1);
+		return singlePushes | doublePushes | (captures & enemy);
+	}
+
+	/** The pieces of the given color that are pinned to their
+	 * king, i.e. the only piece between the king and an enemy
+	 * slider on the same line */
+	public static long getPinnedPieces(Position position, int color, int king, long occupied) {
+		int them = color ^ 1;
+		long queens = position.pieces(them, QUEEN);
+		long snipers = (Attacks.rook(king, 0L) & (position.pieces(them, ROOK) | queens))
+				| (Attacks.bishop(king, 0L) & (position.pieces(them, BISHOP) | queens));
+		long pinned = 0;
+		for (; snipers != 0; snipers &= snipers - 1) {
+			long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+			if (Long.bitCount(blockers) == 1) {
+				pinned |= blockers & position.colorPieces(color);
+			}
+		}
+		return pinned;
+	}
+
+	/** Generates the moves of the given color without taking
+	 * into account if its own king is left in check. Castling
+	 * and en passant are only generated for the side to move */
+	public static int generatePseudoLegalMoves(Position position, int color, int[] moves) {
+		long own = position.colorPieces(color);
+		long enemy = position.colorPieces(color ^ 1);
+		long occupied = own | enemy;
+		long pawns = position.pieces(color, PAWN);
+		int count = addPawnMoves(color, pawns, enemy, occupied, -1L, false, moves, 0);
+
+		for (long knights = position.pieces(color, KNIGHT); knights != 0; knights &= knights - 1) {
+			int from = Long.numberOfTrailingZeros(knights);
+			count = addMoves(from, Attacks.knight(from) & ~own, enemy, moves, count);
+		}
+		long queens = position.pieces(color, QUEEN);
+		for (long bishops = position.pieces(color, BISHOP) | queens; bishops != 0; bishops &= bishops - 1) {
+			int from = Long.numberOfTrailingZeros(bishops);
+			count = addMoves(from, Attacks.bishop(from, occupied) & ~own, enemy, moves, count);
+		}
+		for (long rooks = position.pieces(color, ROOK) | queens; rooks != 0; rooks &= rooks - 1) {
+			int from = Long.numberOfTrailingZeros(rooks);
+			count = addMoves(from, Attacks.rook(from, occupied) & ~own, enemy, moves, count);
+		}
+		int king = position.kingSquare(color);
+		count = addMoves(king, Attacks.king(king) & ~own, enemy, moves, count);
+
+		int enPassant = position.getEnPassantSquare();
+		if (color == position.getSideToMove()) {
+			if (enPassant != NO_SQUARE) {
+				for (long from = Attacks.pawn(color ^ 1, enPassant) & pawns; from != 0; from &= from - 1) {
+					moves[count++] = Move.create(Long.numberOfTrailingZeros(from), enPassant, Move.EN_PASSANT);
+				}
+			}
+			if (!position.isInCheck()) {
+				count = addCastlingMoves(position, color, moves, count);
+			}
+		}
+		return count;
+	}
+
+	/** Adds a move from the square to each of the targets */
+	private static int addMoves(int from, long targets, long enemy, int[] moves, int count) {
+		for (; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			moves[count++] = Move.create(from, to, ((enemy >>> to) & 1) != 0 ? Move.CAPTURE : Move.QUIET);
+		}
+		return count;
+	}
+
+	/** Generates the moves of the pawns at once, by shifting the
+	 * bitboard of pawns forwards and diagonally. Only moves to
+	 * squares in the target mask are added, and of the pushes
+	 * only promotions if capturesOnly is set */
+	private static int addPawnMoves(int color, long pawns, long enemy, long occupied, long targetMask,
+			boolean capturesOnly, int[] moves, int count) {
+		long lastRank = (color == WHITE) ? Bitboards.RANK_8 : Bitboards.RANK_1;
+		int up = (color == WHITE) ? 8 : -8;
+
+		long singlePushes = shift(pawns, up) & ~occupied;
+		long doublePushes = shift(singlePushes & ((color == WHITE) ? Bitboards.RANK_1 << 16 : Bitboards.RANK_1 << 40), up)
+				& ~occupied & targetMask;
+		long leftCaptures = shift(pawns & ~Bitboards.FILE_A, up - 1) & enemy & targetMask;
+		long rightCaptures = shift(pawns & ~Bitboards.FILE_H, up + 1) & enemy & targetMask;
+		singlePushes &= targetMask;
+		if (capturesOnly) {
+			singlePushes &= lastRank;
+			doublePushes = 0;
+		}
+
+		count = addPawnMoves(singlePushes & ~lastRank, up, Move.QUIET, moves, count);
+		count = addPawnMoves(doublePushes, 2 * up, Move.DOUBLE_PAWN_PUSH, moves, count);
+		count = addPawnMoves(leftCaptures & ~lastRank, up - 1, Move.CAPTURE, moves, count);
+		count = addPawnMoves(rightCaptures & ~lastRank, up + 1, Move.CAPTURE, moves, count);
+
+		for (long targets = singlePushes & lastRank; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			count = addPromotions(to - up, to, false, moves, count);
+		}
+		for (long targets = leftCaptures & lastRank; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			count = addPromotions(to - up + 1, to, true, moves, count);
+		}
+		for (long targets = rightCaptures & lastRank; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			count = addPromotions(to - up - 1, to, true, moves, count);
+		}
+		return count;
+	}
+
+	private static int addPawnMoves(long targets, int offset, int flags, int[] moves, int count) {
+		for (; targets != 0; targets &= targets - 1) {
+			int to = Long.numberOfTrailingZeros(targets);
+			moves[count++] = Move.create(to - offset, to, flags);
+		}
+		return count;
+	}
+
+	/** En passant removes two pawns from the same row at once, which
+	 * the pin and check masks do not cover. Each capture is instead
+	 * tested by looking for attackers of the king on the board as it
+	 * would look after the capture */
+	private static int addLegalEnPassant(Position position, int color, int king, long occupied,
+			int[] moves, int count) {
+		int enPassant = position.getEnPassantSquare();
+		for (long from = getLegalEnPassantPawns(position, color, king, occupied); from != 0; from &= from - 1) {
+			moves[count++] = Move.create(Long.numberOfTrailingZeros(from), enPassant, Move.EN_PASSANT);
+		}
+		return count;
+	}
+
+	/** The pawns that can legally capture en passant */
+	private static long getLegalEnPassantPawns(Position position, int color, int king, long occupied) {
+		int enPassant = position.getEnPassantSquare();
+		if (enPassant == NO_SQUARE) {
+			return 0;
+		}
+		long captured = 1L << (enPassant ^ 8);
+		long legal = 0;
+		for (long from = Attacks.pawn(color ^ 1, enPassant) & position.pieces(color, PAWN); from != 0; from &= from - 1) {
+			long occupiedAfter = (occupied ^ (from & -from) ^ captured) | (1L << enPassant);
+			if ((position.attackersTo(king, color ^ 1, occupiedAfter) & ~captured) == 0) {
+				legal |= from & -from;
+			}
+		}
+		return legal;
+	}
+
+	private static long shift(long bitboard, int offset) {
+		return (offset > 0) ? bitboard << offset : bitboard >>> -offset;
+	}
+
+	private static int addPromotions(int from, int to, boolean capture, int[] moves, int count) {
+		for (int type = QUEEN; type >= KNIGHT; type--) {
+			moves[count++] = Move.createPromotion(from, to, type, capture);
+		}
+		return count;
+	}
+
+	/** Adds the castling moves of the side to move, which must not be in check */
+	private static int addCastlingMoves(Position position, int color, int[] moves, int count) {
+		int rights = position.getCastlingRights() >>> (2 * color);
+		int king = (color == WHITE) ? 4 : 60;
+		int opponent = color ^ 1;
+		if ((rights & 1) != 0 && position.isEmpty(king + 1) && position.isEmpty(king + 2)
+				&& !position.isSquareAttacked(king + 1, opponent)
+				&& !position.isSquareAttacked(king + 2, opponent)) {
+			moves[count++] = Move.create(king, king + 2, Move.KING_CASTLE);
+		}
+		if ((rights & 2) != 0 && position.isEmpty(king - 1) && position.isEmpty(king - 2)
+				&& position.isEmpty(king - 3)
+				&& !position.isSquareAttacked(king - 1, opponent)
+				&& !position.isSquareAttacked(king - 2, opponent)) {
+			moves[count++] = Move.create(king, king - 2, Move.QUEEN_CASTLE);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,106 @@
+package application.engine;
+
+/**
+ *    A reusable list of int encoded moves (see {@link Move}),
+ *    backed by a preallocated array. The search keeps one
+ *    list per ply and refills it at every node, so no lists
+ *    or move objects are allocated while searching.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class MoveList {
+
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+	private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+	private int size;
+
+	/** Creates one list for each ply of a search */
+	public static MoveList[] createStack(int plies) {
+		MoveList[] stack = new MoveList[plies];
+		for (int i = 0; i < plies; i++) {
+			stack[i] = new MoveList();
+		}
+		return stack;
+	}
+
+	/** Fills the list with the legal moves of the position */
+	public int generateLegalMoves(Position position) {
+		size = MoveGenerator.generateLegalMoves(position, moves);
+		return size;
+	}
+
+	/** Fills the list with the legal captures and promotions */
+	public int generateCaptures(Position position) {
+		size = MoveGenerator.generateLegalCaptures(position, moves);
+		return size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int get(int index) {
+		return moves[index];
+	}
+
+	public void add(int move) {
+		moves[size++] = move;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/** Sets the ordering score of the move at the index */
+	public void setScore(int index, int score) {
+		scores[index] = score;
+	}
+
+	public int getScore(int index) {
+		return scores[index];
+	}
+
+	/** Swaps the highest scored of the moves from the index
+	 * and on into the index, and returns it. Picking the
+	 * moves one at a time is cheaper than sorting the list
+	 * when a cutoff comes after the first few moves */
+	public int pickNext(int index) {
+		int best = index;
+		for (int i = index + 1; i < size; i++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+		int move = moves[best];
+		int score = scores[best];
+		moves[best] = moves[index];
+		scores[best] = scores[index];
+		moves[index] = move;
+		scores[index] = score;
+		return move;
+	}
+
+	/** Swaps the move to the front of the list, so it is
+	 * searched first. Does nothing if it is not in the list */
+	public void moveToFront(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) {
+				moves[i] = moves[0];
+				moves[0] = move;
+				return;
+			}
+		}
+	}
+
+	public boolean contains(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,177 @@
+package application.engine;
+
+import java.util.Arrays;
+
+/**
+ *    Scores moves so the search tries the moves most likely
+ *    to cause a cutoff first. In order: the best move from the
+ *    transposition table, captures by MVV-LVA (most valuable
+ *    victim, least valuable attacker), the two killer moves of
+ *    the ply, the counter move to the opponent's last move and
+ *    then the quiet moves by their history score. The history
+ *    tables remember which quiet moves caused cutoffs earlier
+ *    in the search. Each search thread needs its own instance.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class MoveOrdering {
+
+	private static final int HASH_MOVE_SCORE = 1 << 30;
+	private static final int CAPTURE_SCORE = 1 << 29;
+	private static final int KILLER_SCORE = 1 << 28;
+	private static final int COUNTER_MOVE_SCORE = (1 << 28) - 2;
+	private static final int UNDERPROMOTION_SCORE = -(1 << 28);
+
+	/** History scores are kept between -MAX_HISTORY and MAX_HISTORY */
+	private static final int MAX_HISTORY = 16384;
+
+	private final int[][] killers = new int[Search.MAX_PLY + 1][2];
+
+	/** Butterfly history, indexed by color, from and to square */
+	private final int[][][] history = new int[2][64][64];
+
+	/** The reply that refuted each move, indexed by moved piece and to square */
+	private final int[][] counterMoves = new int[16][64];
+
+	/** History of each move following each move, indexed by the moved piece
+	 * and to square of both. Only allocated when enabled, as it is 2 MB */
+	private short[] continuationHistory;
+
+	private boolean useCounterMoves = true;
+
+	/** Turns the counter move heuristic on or off */
+	public void setCounterMoves(boolean useCounterMoves) {
+		this.useCounterMoves = useCounterMoves;
+	}
+
+	/** Turns the continuation history on or off */
+	public void setContinuationHistory(boolean useContinuationHistory) {
+		continuationHistory = (useContinuationHistory) ? new short[1024 * 1024] : null;
+	}
+
+	/** Prepares for a new search: forgets the killer moves
+	 * and halves the history scores, so recent cutoffs count
+	 * for more than those of earlier searches */
+	public void newSearch() {
+		for (int[] plyKillers : killers) {
+			Arrays.fill(plyKillers, Move.NONE);
+		}
+		for (int[][] colorHistory : history) {
+			for (int[] fromHistory : colorHistory) {
+				for (int to = 0; to < 64; to++) {
+					fromHistory[to] /= 2;
+				}
+			}
+		}
+		if (continuationHistory != null) {
+			for (int i = 0; i < continuationHistory.length; i++) {
+				continuationHistory[i] /= 2;
+			}
+		}
+	}
+
+	/** Gives each move in the list a score, to be picked
+	 * in order with {@link MoveList#pickNext(int)} */
+	public void scoreMoves(Position position, MoveList moves, int hashMove, int ply) {
+		int color = position.getSideToMove();
+		int previous = previousMoveIndex(position);
+		int counterMove = (useCounterMoves && previous >= 0) ? counterMoves[previous >>> 6][previous & 63] : Move.NONE;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int score;
+			if (move == hashMove) {
+				score = HASH_MOVE_SCORE;
+			} else if (Move.isPromotion(move) && Move.promotionType(move) != Position.QUEEN) {
+				score = UNDERPROMOTION_SCORE + Move.promotionType(move);
+			} else if (Move.isCapture(move) || Move.isPromotion(move)) {
+				score = CAPTURE_SCORE + getMvvLva(position, move);
+			} else if (move == killers[ply][0]) {
+				score = KILLER_SCORE;
+			} else if (move == killers[ply][1]) {
+				score = KILLER_SCORE - 1;
+			} else if (move == counterMove) {
+				score = COUNTER_MOVE_SCORE;
+			} else {
+				score = getHistory(position, color, move, previous);
+			}
+			moves.setScore(i, score);
+		}
+	}
+
+	/** Captures of valuable pieces first, and of those,
+	 * the ones by the least valuable piece. Promotions
+	 * count as capturing the piece promoted to */
+	private static int getMvvLva(Position position, int move) {
+		int victim = (Move.flags(move) == Move.EN_PASSANT) ? Position.PAWN
+				: Position.typeOf(position.pieceAt(Move.to(move)));
+		int attacker = Position.typeOf(position.pieceAt(Move.from(move)));
+		int score = (Move.isCapture(move)) ? (victim + 1) * 16 - attacker : 0;
+		if (Move.isPromotion(move)) {
+			score += Move.promotionType(move) * 16;
+		}
+		return score;
+	}
+
+	private int getHistory(Position position, int color, int move, int previous) {
+		int score = history[color][Move.from(move)][Move.to(move)];
+		if (continuationHistory != null && previous >= 0) {
+			score += continuationHistory[(previous << 10) | moveIndex(position, move)];
+		}
+		return score;
+	}
+
+	/** Rewards a quiet move that caused a beta cutoff, and punishes
+	 * the quiet moves searched before it in the list, which did not */
+	public void updateQuietCutoff(Position position, int move, int ply, int depth, MoveList moves, int searched) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int color = position.getSideToMove();
+		int previous = previousMoveIndex(position);
+		if (useCounterMoves && previous >= 0) {
+			counterMoves[previous >>> 6][previous & 63] = move;
+		}
+		int bonus = Math.min(depth * depth, 400);
+		updateHistory(position, color, move, previous, bonus);
+		for (int i = 0; i < searched; i++) {
+			int other = moves.get(i);
+			if (other != move && !Move.isCapture(other) && !Move.isPromotion(other)) {
+				updateHistory(position, color, other, previous, -bonus);
+			}
+		}
+	}
+
+	/** Moves the score towards the bonus, slowing down as it
+	 * approaches the limits so it stays within them */
+	private void updateHistory(Position position, int color, int move, int previous, int bonus) {
+		int[] fromHistory = history[color][Move.from(move)];
+		int to = Move.to(move);
+		fromHistory[to] += 32 * bonus - fromHistory[to] * Math.abs(bonus) / (MAX_HISTORY / 32);
+		if (continuationHistory != null && previous >= 0) {
+			int index = (previous << 10) | moveIndex(position, move);
+			continuationHistory[index] += 32 * bonus - continuationHistory[index] * Math.abs(bonus) / (MAX_HISTORY / 32);
+		}
+	}
+
+	public int getKiller(int ply, int index) {
+		return killers[ply][index];
+	}
+
+	/** Moved piece and to square of a move in the position, 0-1023 */
+	private static int moveIndex(Position position, int move) {
+		return (position.pieceAt(Move.from(move)) << 6) | Move.to(move);
+	}
+
+	/** Moved piece and to square of the last move made, or -1 if there was none */
+	private static int previousMoveIndex(Position position) {
+		int move = position.getLastMove();
+		if (move == Move.NONE) {
+			return -1;
+		}
+		return (position.pieceAt(Move.to(move)) << 6) | Move.to(move);
+	}
+}
@@ -0,0 +1,383 @@
+package application.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import application.StopWatch;
+
+/**
+ *    Searches a position with several threads that share
+ *    one {@link TranspositionTable} (lazy SMP). Every thread
+ *    runs its own {@link Search} of the whole tree, and the
+ *    threads help each other only through the table: a
+ *    result stored by one thread is a cutoff or a hash move
+ *    for the others. The helper threads skip some depths, so
+ *    they are spread over several depths instead of all
+ *    searching the same nodes. The main thread decides when
+ *    to stop, and its best move is played.
+ *    In the simpler root splitting mode, the root moves of
+ *    each iteration are instead shared between the threads
+ *    of a {@link ForkJoinPool}. The first move is searched
+ *    alone to get a bound, and the rest are searched in
+ *    parallel, each on its own copy of the position, with
+ *    the best score so far (alpha) shared between them.
+ *    Run the main method to measure the time to depth with
+ *    1, 2, 4, 8 and 16 threads.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class ParallelSearch {
+
+	/** The maximum number of search threads */
+	public static final int MAX_THREADS = 256;
+
+	/** Positions and depth of the time to depth benchmark */
+	private static final String[] BENCHMARK_FENS = {
+			Position.START_FEN,
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+	};
+	private static final int BENCHMARK_DEPTH = 9;
+
+	private final TranspositionTable table;
+	private Search[] searches;
+	private ExecutorService helpers;
+	private ForkJoinPool pool;
+	private boolean queenPromotionsOnly;
+	private boolean rootSplitting;
+	private Runnable iterationListener;
+
+	/** Searches not in use by a root splitting task */
+	private final Queue<Search> idleSearches = new ConcurrentLinkedQueue<>();
+	private final List<Search> splitSearches = new ArrayList<>();
+	private Position rootPosition;
+	private TimeManager rootTime;
+	private int bestScore;
+	private int completedDepth;
+	private int[] principalVariation = new int[0];
+
+	public ParallelSearch(TranspositionTable table) {
+		this.table = table;
+		setThreads(1);
+	}
+
+	/** Sets the number of search threads, the main thread included */
+	public void setThreads(int threads) {
+		if (threads < 1 || threads > MAX_THREADS) {
+			throw new IllegalArgumentException("Threads must be between 1 and " + MAX_THREADS + ": " + threads);
+		}
+		if (helpers != null) {
+			helpers.shutdown();
+			helpers = null;
+		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		searches = new Search[threads];
+		for (int i = 0; i < threads; i++) {
+			searches[i] = new Search(table);
+			searches[i].setHelperIndex((rootSplitting) ? 0 : i);
+			searches[i].setQueenPromotionsOnly(queenPromotionsOnly);
+		}
+		searches[0].setIterationListener(this::mainIterationCompleted);
+		if (threads > 1 && rootSplitting) {
+			pool = new ForkJoinPool(threads);
+		} else if (threads > 1) {
+			helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+				Thread thread = new Thread(runnable, "Search helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public int getThreads() {
+		return searches.length;
+	}
+
+	/** Turns root splitting on instead of lazy SMP */
+	public void setRootSplitting(boolean rootSplitting) {
+		this.rootSplitting = rootSplitting;
+		setThreads(getThreads());
+	}
+
+	/** Runs the listener on the search thread after each iteration
+	 * of the main thread, when its best score, completed depth and
+	 * principal variation can be read */
+	public void setIterationListener(Runnable iterationListener) {
+		this.iterationListener = iterationListener;
+	}
+
+	/** Whether promotions to other pieces than a queen
+	 * are left out at the root (see {@link Search}) */
+	public void setQueenPromotionsOnly(boolean queenPromotionsOnly) {
+		this.queenPromotionsOnly = queenPromotionsOnly;
+		for (Search search : searches) {
+			search.setQueenPromotionsOnly(queenPromotionsOnly);
+		}
+	}
+
+	/** Searches the position with all threads until the main
+	 * thread is done, and returns its best move, or
+	 * {@link Move#NONE} if there are no legal moves */
+	public int search(Position position, TimeManager time, int maxDepth) {
+		table.newSearch();
+		if (pool != null) {
+			return searchSplit(position, time, maxDepth);
+		}
+		//The counts of the last search are cleared before any thread
+		//starts, so the nodes reported after the first iteration are right
+		for (Search search : searches) {
+			search.resetStatistics();
+		}
+		List<Future<?>> running = new ArrayList<>();
+		for (int i = 1; i < searches.length; i++) {
+			Search helper = searches[i];
+			running.add(helpers.submit(() -> helper.search(position, time, maxDepth)));
+		}
+		int move;
+		try {
+			move = searches[0].search(position, time, maxDepth);
+		} finally {
+			time.stop();
+			for (Future<?> helper : running) {
+				try {
+					helper.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("A search helper failed", e.getCause());
+				}
+			}
+		}
+		takeMainResult();
+		return move;
+	}
+
+	/** Called by the main thread of lazy SMP after each iteration */
+	private void mainIterationCompleted() {
+		takeMainResult();
+		iterationCompleted();
+	}
+
+	/** Takes the best score, depth and principal variation of the main thread */
+	private void takeMainResult() {
+		Search main = searches[0];
+		bestScore = main.getBestScore();
+		completedDepth = main.getCompletedDepth();
+		principalVariation = main.getPrincipalVariation();
+	}
+
+	private void iterationCompleted() {
+		if (iterationListener != null) {
+			iterationListener.run();
+		}
+	}
+
+	/** Iterative deepening with the root moves of each iteration
+	 * searched in parallel. The first move (the best of the last
+	 * iteration) is searched with a full window, and the others
+	 * with a null window around the shared alpha, and searched
+	 * again if they turn out to be better */
+	private int searchSplit(Position position, TimeManager time, int maxDepth) {
+		rootPosition = position;
+		rootTime = time;
+		idleSearches.clear();
+		idleSearches.addAll(Arrays.asList(searches));
+		splitSearches.clear();
+		splitSearches.addAll(Arrays.asList(searches));
+		for (Search search : searches) {
+			search.prepare(position, time);
+		}
+		bestScore = 0;
+		completedDepth = 0;
+		principalVariation = new int[0];
+
+		MoveList rootMoves = new MoveList();
+		MoveList legalMoves = new MoveList();
+		legalMoves.generateLegalMoves(position);
+		for (int i = 0; i < legalMoves.size(); i++) {
+			int move = legalMoves.get(i);
+			if (!queenPromotionsOnly || !Move.isPromotion(move) || Move.promotionType(move) == Position.QUEEN) {
+				rootMoves.add(move);
+			}
+		}
+		if (rootMoves.size() == 0) {
+			return Move.NONE;
+		}
+		int bestMove = Move.NONE;
+		for (int depth = 1; depth <= Math.min(maxDepth, Search.MAX_PLY); depth++) {
+			if (depth > 1 && !time.canStartIteration()) {
+				break;
+			}
+			rootMoves.moveToFront(bestMove);
+			int[] scores = new int[rootMoves.size()];
+			int[][] variations = new int[rootMoves.size()][];
+			if (!searchSplitIteration(rootMoves, depth, scores, variations)) {
+				break; //The unfinished iteration is thrown away
+			}
+			//Moves that failed low have no score, so the first best score wins
+			int best = 0;
+			for (int i = 1; i < scores.length; i++) {
+				if (scores[i] > scores[best]) {
+					best = i;
+				}
+			}
+			bestMove = rootMoves.get(best);
+			bestScore = scores[best];
+			principalVariation = variations[best];
+			completedDepth = depth;
+			table.store(position.getKey(), bestMove, bestScore, depth, TranspositionTable.EXACT);
+			iterationCompleted();
+			if (Search.isMateWithin(bestScore, depth)) {
+				break;
+			}
+		}
+		return bestMove;
+	}
+
+	/** Searches each root move to the depth, setting the score of the
+	 * moves that raised alpha and -INFINITY for the others. Returns
+	 * false if the time ran out before all moves were searched */
+	private boolean searchSplitIteration(MoveList rootMoves, int depth, int[] scores, int[][] variations) {
+		Search first = idleSearches.poll();
+		scores[0] = first.searchRootMove(rootMoves.get(0), depth, -Search.INFINITY, Search.INFINITY);
+		variations[0] = first.getRootMovePrincipalVariation();
+		idleSearches.add(first);
+		if (first.isAborted()) {
+			return false;
+		}
+		AtomicInteger alpha = new AtomicInteger(scores[0]);
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 1; i < rootMoves.size(); i++) {
+			int index = i;
+			int move = rootMoves.get(i);
+			tasks.add(ForkJoinTask.adapt(() -> {
+				Search search = takeSearch();
+				try {
+					int bound = alpha.get();
+					int score = search.searchRootMove(move, depth, bound, bound + 1);
+					if (score > bound && !search.isAborted()) {
+						bound = alpha.get();
+						score = search.searchRootMove(move, depth, bound, Search.INFINITY);
+					}
+					if (score > bound && !search.isAborted()) {
+						scores[index] = score;
+						variations[index] = search.getRootMovePrincipalVariation();
+						alpha.accumulateAndGet(score, Math::max);
+					} else {
+						scores[index] = -Search.INFINITY;
+					}
+				} finally {
+					idleSearches.add(search);
+				}
+			}));
+		}
+		pool.invoke(ForkJoinTask.adapt(() -> {
+			ForkJoinTask.invokeAll(tasks);
+		}));
+		for (Search search : splitSearches) {
+			if (search.isAborted()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** An idle search of the root, or a new one if all are in use,
+	 * which happens if the pool adds threads while others wait */
+	private synchronized Search takeSearch() {
+		Search search = idleSearches.poll();
+		if (search == null) {
+			search = new Search(table);
+			search.setQueenPromotionsOnly(queenPromotionsOnly);
+			search.prepare(rootPosition, rootTime);
+			splitSearches.add(search);
+		}
+		return search;
+	}
+
+	/** The search of the main thread, which has the
+	 * best move, score and principal variation */
+	public Search getMainSearch() {
+		return searches[0];
+	}
+
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	public int[] getPrincipalVariation() {
+		return principalVariation;
+	}
+
+	/** Nodes searched by all threads */
+	public long getNodes() {
+		long nodes = 0;
+		for (Search search : (pool != null) ? splitSearches : Arrays.asList(searches)) {
+			nodes += search.getNodes();
+		}
+		return nodes;
+	}
+
+	/** Times the search of the benchmark positions to a fixed
+	 * depth with 1, 2, 4, 8 and 16 threads, each time with an
+	 * empty table, and prints the speedup over one thread. The
+	 * positions are searched once first, so the code is compiled
+	 * by the JIT before the one thread search is timed */
+	public static void main(String[] args) {
+		int depth = (args.length > 0) ? Integer.parseInt(args[0]) : BENCHMARK_DEPTH;
+		int hashMegabytes = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+		TranspositionTable table = new TranspositionTable(hashMegabytes);
+		ParallelSearch search = new ParallelSearch(table);
+		searchBenchmark(search, table, depth);
+		System.out.println("Cores: " + Runtime.getRuntime().availableProcessors());
+		double singleThreaded = 0;
+		for (int threads = 1; threads <= 16; threads *= 2) {
+			search.setThreads(threads);
+			StopWatch clock = new StopWatch();
+			clock.start();
+			long nodes = searchBenchmark(search, table, depth);
+			clock.stop();
+			double seconds = clock.getElapsedTimeSecs();
+			if (threads == 1) {
+				singleThreaded = seconds;
+			}
+			System.out.printf("Threads: %2d  Nodes: %d  Time to depth %d: %.3f sec.  Speedup: %.2f%n",
+					threads, nodes, depth, seconds, singleThreaded / seconds);
+		}
+		search.setThreads(1);
+	}
+
+	/** Searches each benchmark position to the depth with an empty table, returning the nodes */
+	private static long searchBenchmark(ParallelSearch search, TranspositionTable table, int depth) {
+		long nodes = 0;
+		for (String fen : BENCHMARK_FENS) {
+			table.clear();
+			TimeManager time = new TimeManager();
+			time.startInfinite();
+			search.search(Position.fromFen(fen), time, depth);
+			nodes += search.getNodes();
+		}
+		return nodes;
+	}
+}
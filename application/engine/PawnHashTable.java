@@ -0,0 +1,109 @@
+package application.engine;
+
+import java.util.Arrays;
+
+/**
+ *    Cache of pawn structure evaluations, indexed by the
+ *    pawn key of the position (see {@link Position#getPawnKey()}).
+ *    The pawns change in few of the moves searched, so most
+ *    positions find their pawn structure already evaluated.
+ *    Each entry holds the middlegame and endgame scores of
+ *    the structure and the passed pawns of both sides. Each
+ *    search thread needs its own table.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class PawnHashTable {
+
+	/** Entries of a table when no size is given */
+	public static final int DEFAULT_ENTRIES = 16384;
+
+	private final long[] keys;
+	private final long[] passedPawns;
+	private final int[] midgameScores;
+	private final int[] endgameScores;
+	private final int mask;
+
+	private long probes;
+	private long hits;
+
+	public PawnHashTable() {
+		this(DEFAULT_ENTRIES);
+	}
+
+	/** A table of the largest power of two number of entries up to the number */
+	public PawnHashTable(int entries) {
+		int size = Integer.highestOneBit(Math.max(entries, 1));
+		keys = new long[size];
+		passedPawns = new long[size];
+		midgameScores = new int[size];
+		endgameScores = new int[size];
+		mask = size - 1;
+	}
+
+	/** The index of the entry of the pawn key if it is stored, otherwise -1 */
+	public int probe(long pawnKey) {
+		probes++;
+		int index = (int) pawnKey & mask;
+		//An empty entry has key 0 and scores 0, which is right for no pawns
+		if (keys[index] == pawnKey) {
+			hits++;
+			return index;
+		}
+		return -1;
+	}
+
+	/** Stores the evaluation of the pawn structure, returning its index */
+	public int store(long pawnKey, int midgame, int endgame, long passed) {
+		int index = (int) pawnKey & mask;
+		keys[index] = pawnKey;
+		midgameScores[index] = midgame;
+		endgameScores[index] = endgame;
+		passedPawns[index] = passed;
+		return index;
+	}
+
+	/** The middlegame score of the entry, for white */
+	public int getMidgame(int index) {
+		return midgameScores[index];
+	}
+
+	/** The endgame score of the entry, for white */
+	public int getEndgame(int index) {
+		return endgameScores[index];
+	}
+
+	/** The passed pawns of both sides */
+	public long getPassedPawns(int index) {
+		return passedPawns[index];
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(passedPawns, 0L);
+		Arrays.fill(midgameScores, 0);
+		Arrays.fill(endgameScores, 0);
+		resetStatistics();
+	}
+
+	public void resetStatistics() {
+		probes = 0;
+		hits = 0;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	/** The share of probes that found their entry, from 0 to 1 */
+	public double getHitRate() {
+		return (probes == 0) ? 0 : (double) hits / probes;
+	}
+}
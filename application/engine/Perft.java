@@ -0,0 +1,296 @@
+package application.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import application.StopWatch;
+
+/**
+ *    Counts the leaf nodes of the legal move tree to a
+ *    fixed depth (perft), and compares the counts for a
+ *    suite of reference positions with their known values.
+ *    The suite includes the edge cases of en passant and
+ *    castling that move generators most often get wrong.
+ *    Run the main method to check the move generator, and
+ *    to measure its speed in nodes per second. Options:
+ *    <pre>
+ *    -fen &lt;FEN&gt;     count this position instead of the suite
+ *    -depth &lt;n&gt;     depth for -fen (default 5)
+ *    -divide        print the count below each root move
+ *    -hash &lt;MB&gt;     reuse counts of transposed positions
+ *    -threads &lt;n&gt;   count the root moves in parallel
+ *    -scaling       compare the speed with 1, 2, 4... threads
+ *    </pre>
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class Perft {
+
+	/** FEN, depth and expected node count */
+	private static final String[][] SUITE = {
+			{Position.START_FEN, "5", "4865609"},
+			{"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "4", "4085603"},
+			{"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "5", "674624"},
+			{"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", "4", "422333"},
+			{"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", "4", "2103487"},
+			{"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "4", "3894594"},
+			//En passant that would expose the king, and en passant giving check
+			{"3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1", "6", "1134888"},
+			{"8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1", "6", "1015133"},
+			{"8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", "6", "1440467"},
+			//Castling giving check, castling rights and castling through attacked squares
+			{"5k2/8/8/8/8/8/8/4K2R w K - 0 1", "6", "661072"},
+			{"3k4/8/8/8/8/8/8/R3K3 w Q - 0 1", "6", "803711"},
+			{"r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1", "4", "1274206"},
+			{"r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1", "4", "1720476"},
+			//Promotions, discovered and double checks, stalemate and checkmate
+			{"2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1", "6", "3821001"},
+			{"8/8/1P2K3/8/2n5/1q6/8/5k2 b - - 0 1", "5", "1004658"},
+			{"4k3/1P6/8/8/8/8/K7/8 w - - 0 1", "6", "217342"},
+			{"8/P1k5/K7/8/8/8/8/8 w - - 0 1", "6", "92683"},
+			{"K1k5/8/P7/8/8/8/8/8 w - - 0 1", "6", "2217"},
+			{"8/k1P5/8/1K6/8/8/8/8 w - - 0 1", "7", "567584"},
+			{"8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1", "4", "23527"}
+	};
+
+	/** One move list per remaining depth */
+	private final int[][] moves = new int[64][MoveGenerator.MAX_MOVES];
+	private final HashTable hash;
+	private final int threads;
+
+	public Perft() {
+		this(1, 0);
+	}
+
+	/** A perft that splits the root moves between the threads
+	 * and, if the size is above 0, uses a hash table of counts */
+	public Perft(int threads, int hashMegabytes) {
+		this.threads = threads;
+		this.hash = (hashMegabytes > 0) ? new HashTable(hashMegabytes) : null;
+	}
+
+	/** Single threaded perft for one task, sharing the hash table */
+	private Perft(HashTable hash) {
+		this.threads = 1;
+		this.hash = hash;
+	}
+
+	/** The number of leaf nodes of the legal move tree */
+	public long perft(Position position, int depth) {
+		if (threads == 1 || depth < 2) {
+			return count(position, depth);
+		}
+		long nodes = 0;
+		for (long rootNodes : countRootMoves(position, depth)) {
+			nodes += rootNodes;
+		}
+		return nodes;
+	}
+
+	/** Prints the number of leaf nodes below each legal move,
+	 * which narrows down a wrong count to a single move when
+	 * compared with the output of another engine. The depth
+	 * must be at least 1 */
+	public long divide(Position position, int depth) {
+		StopWatch clock = new StopWatch();
+		clock.start();
+		long[] rootNodes = countRootMoves(position, depth);
+		clock.stop();
+		
+		long nodes = 0;
+		for (int i = 0; i < rootNodes.length; i++) {
+			System.out.println(Move.toString(moves[depth][i]) + ": " + rootNodes[i]);
+			nodes += rootNodes[i];
+		}
+		System.out.println("Moves: " + rootNodes.length);
+		System.out.println("Nodes: " + nodes);
+		printSpeed(nodes, clock);
+		return nodes;
+	}
+
+	/** Counts the leaf nodes below each legal move, in the order
+	 * they are left in the move list of the depth. With more than
+	 * one thread each root move is a fork-join task searching its
+	 * own copy of the position */
+	private long[] countRootMoves(Position position, int depth) {
+		int count = MoveGenerator.generateLegalMoves(position, moves[depth]);
+		long[] rootNodes = new long[count];
+		if (threads == 1) {
+			for (int i = 0; i < count; i++) {
+				position.makeMove(moves[depth][i]);
+				rootNodes[i] = count(position, depth - 1);
+				position.unmakeMove();
+			}
+			return rootNodes;
+		}
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Position child = new Position(position);
+			child.makeMove(moves[depth][i]);
+			int index = i;
+			tasks.add(ForkJoinTask.adapt(() -> {
+				rootNodes[index] = new Perft(hash).count(child, depth - 1);
+			}));
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(ForkJoinTask.adapt(() -> {
+				ForkJoinTask.invokeAll(tasks);
+			}));
+		} finally {
+			pool.shutdown();
+		}
+		return rootNodes;
+	}
+
+	/** Depth first count on a single thread. The moves on the
+	 * last level are only counted, not made (bulk counting) */
+	private long count(Position position, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		if (hash != null && depth > 1) {
+			long nodes = hash.probe(position.getKey(), depth);
+			if (nodes >= 0) {
+				return nodes;
+			}
+		}
+		int count = MoveGenerator.generateLegalMoves(position, moves[depth]);
+		if (depth == 1) {
+			return count;
+		}
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			position.makeMove(moves[depth][i]);
+			nodes += count(position, depth - 1);
+			position.unmakeMove();
+		}
+		if (hash != null) {
+			hash.store(position.getKey(), depth, nodes);
+		}
+		return nodes;
+	}
+
+	/** Runs the suite, printing the result for each position.
+	 * Returns whether all node counts matched */
+	public boolean runSuite() {
+		boolean passed = true;
+		long totalNodes = 0;
+		StopWatch clock = new StopWatch();
+		clock.start();
+		for (String[] test : SUITE) {
+			int depth = Integer.parseInt(test[1]);
+			long expected = Long.parseLong(test[2]);
+			long nodes = perft(Position.fromFen(test[0]), depth);
+			passed &= nodes == expected;
+			totalNodes += nodes;
+			System.out.println(((nodes == expected) ? "OK     " : "FAILED ") + test[0] + " depth " + depth
+					+ ": " + nodes + ((nodes == expected) ? "" : " (expected " + expected + ")"));
+		}
+		clock.stop();
+		printSpeed(totalNodes, clock);
+		return passed;
+	}
+
+	private static void printSpeed(long nodes, StopWatch clock) {
+		double seconds = clock.getElapsedTimeSecs();
+		System.out.printf("Time: %.3f sec. (%.0f nodes per sec.)%n", seconds, nodes / Math.max(seconds, 1e-9));
+	}
+
+	/** Times the position with 1, 2, 4... threads up to the number
+	 * of processors, to show how well the count scales with cores */
+	private static void runScaling(Position position, int depth, int hashMegabytes) {
+		double singleThreaded = 0;
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			StopWatch clock = new StopWatch();
+			clock.start();
+			long nodes = new Perft(threads, hashMegabytes).perft(new Position(position), depth);
+			clock.stop();
+			double seconds = clock.getElapsedTimeSecs();
+			if (threads == 1) {
+				singleThreaded = seconds;
+			}
+			System.out.printf("Threads: %2d  Nodes: %d  Time: %.3f sec.  Speedup: %.2f%n",
+					threads, nodes, seconds, singleThreaded / seconds);
+		}
+	}
+
+	public static void main(String[] args) {
+		String fen = null;
+		int depth = 5, threads = 1, hashMegabytes = 0;
+		boolean divide = false, scaling = false;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-fen": fen = args[++i]; break;
+			case "-depth": depth = Integer.parseInt(args[++i]); break;
+			case "-threads": threads = Integer.parseInt(args[++i]); break;
+			case "-hash": hashMegabytes = Integer.parseInt(args[++i]); break;
+			case "-divide": divide = true; break;
+			case "-scaling": scaling = true; break;
+			default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		Perft perft = new Perft(threads, hashMegabytes);
+		if (scaling) {
+			runScaling(Position.fromFen((fen == null) ? Position.START_FEN : fen), depth, hashMegabytes);
+		} else if (fen == null) {
+			if (!perft.runSuite()) {
+				System.exit(1);
+			}
+		} else if (divide) {
+			perft.divide(Position.fromFen(fen), depth);
+		} else {
+			StopWatch clock = new StopWatch();
+			clock.start();
+			long nodes = perft.perft(Position.fromFen(fen), depth);
+			clock.stop();
+			System.out.println("Nodes: " + nodes);
+			printSpeed(nodes, clock);
+		}
+	}
+
+	/**
+	 *    Node counts of positions counted before, by key and depth.
+	 *    The table is shared by all threads without locking: each
+	 *    entry holds the key XOR its data, so an entry half written
+	 *    by one thread while another reads it fails the key check.
+	 */
+	private static final class HashTable {
+
+		private static final long NODES_MASK = (1L << 56) - 1;
+
+		private final long[] keys;
+		private final long[] data;
+		private final int mask;
+
+		/** The largest power of two number of entries that fits in the size */
+		HashTable(int megabytes) {
+			int entries = Integer.highestOneBit((int) Math.min((megabytes * 1024L * 1024L) / 16, 1 << 30));
+			keys = new long[entries];
+			data = new long[entries];
+			mask = entries - 1;
+		}
+
+		/** The stored node count, or -1 if the position is not stored */
+		long probe(long key, int depth) {
+			int index = (int) key & mask;
+			long entry = data[index];
+			if ((keys[index] ^ entry) == key && (entry >>> 56) == depth) {
+				return entry & NODES_MASK;
+			}
+			return -1;
+		}
+
+		void store(long key, int depth, long nodes) {
+			int index = (int) key & mask;
+			long entry = ((long) depth << 56) | nodes;
+			keys[index] = key ^ entry;
+			data[index] = entry;
+		}
+	}
+}
@@ -0,0 +1,615 @@
+package application.engine;
+
+import java.util.Arrays;
+
+/**
+ *    Bitboard representation of a chess position, used
+ *    as the internal model of the engine. Keeps one 64-bit
+ *    set per piece type and per color, as well as a mailbox
+ *    array for looking up the piece standing on a square.
+ *    A piece is encoded as an int: (color << 3) | type.
+ *    A Zobrist key of the position is kept up to date as
+ *    pieces are moved (see {@link Zobrist}), and so are the
+ *    piece-square scores and the game phase used by the
+ *    evaluation (see {@link Evaluation}). The journal of the
+ *    moves made doubles as a stack of the earlier keys, used
+ *    to find repetitions.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class Position {
+
+	public static final int WHITE = 0, BLACK = 1;
+	public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+	public static final int EMPTY = -1, NO_SQUARE = -1;
+
+	/** The starting position of a game of chess */
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2,
+			BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+	
+	/** The castling rights that remain after a move from or to each square */
+	private static final int[] CASTLING_MASK = new int[64];
+	
+	static {
+		Arrays.fill(CASTLING_MASK, 15);
+		CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+		CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+		CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+		CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+	}
+
+	private final long[] pieces = new long[6];
+	private final long[] colors = new long[2];
+	private final int[] board = new int[64];
+
+	private int sideToMove = WHITE;
+	private int castlingRights;
+	private int enPassantSquare = NO_SQUARE;
+	private int halfmoveClock;
+	private int fullmoveNumber = 1;
+	private long checkers;
+	private long key;
+	private long pawnKey;
+	private final int[] midgameScore = new int[2];
+	private final int[] endgameScore = new int[2];
+	private int phase;
+	
+	//Undo journal, one entry per move made
+	private int journalSize;
+	private int[] undoMove = new int[256];
+	private int[] undoCaptured = new int[256];
+	private int[] undoCastlingRights = new int[256];
+	private int[] undoEnPassantSquare = new int[256];
+	private int[] undoHalfmoveClock = new int[256];
+	private long[] undoCheckers = new long[256];
+	private long[] undoKey = new long[256];
+
+	/** New empty position with white to move */
+	public Position() {
+		Arrays.fill(board, EMPTY);
+	}
+
+	/** Copy of an existing position. The moves since the last
+	 * capture or pawn move are copied along with it, as they
+	 * are the only ones that can be repeated */
+	public Position(Position other) {
+		System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+		System.arraycopy(other.colors, 0, colors, 0, colors.length);
+		System.arraycopy(other.board, 0, board, 0, board.length);
+		this.sideToMove = other.sideToMove;
+		this.castlingRights = other.castlingRights;
+		this.enPassantSquare = other.enPassantSquare;
+		this.halfmoveClock = other.halfmoveClock;
+		this.fullmoveNumber = other.fullmoveNumber;
+		this.checkers = other.checkers;
+		this.key = other.key;
+		this.pawnKey = other.pawnKey;
+		System.arraycopy(other.midgameScore, 0, midgameScore, 0, 2);
+		System.arraycopy(other.endgameScore, 0, endgameScore, 0, 2);
+		this.phase = other.phase;
+		
+		int start = Math.max(other.journalSize - other.halfmoveClock, 0);
+		journalSize = other.journalSize - start;
+		if (journalSize > undoMove.length) {
+			undoMove = new int[journalSize];
+			undoCaptured = new int[journalSize];
+			undoCastlingRights = new int[journalSize];
+			undoEnPassantSquare = new int[journalSize];
+			undoHalfmoveClock = new int[journalSize];
+			undoCheckers = new long[journalSize];
+			undoKey = new long[journalSize];
+		}
+		System.arraycopy(other.undoMove, start, undoMove, 0, journalSize);
+		System.arraycopy(other.undoCaptured, start, undoCaptured, 0, journalSize);
+		System.arraycopy(other.undoCastlingRights, start, undoCastlingRights, 0, journalSize);
+		System.arraycopy(other.undoEnPassantSquare, start, undoEnPassantSquare, 0, journalSize);
+		System.arraycopy(other.undoHalfmoveClock, start, undoHalfmoveClock, 0, journalSize);
+		System.arraycopy(other.undoCheckers, start, undoCheckers, 0, journalSize);
+		System.arraycopy(other.undoKey, start, undoKey, 0, journalSize);
+	}
+
+	/** Sets up the position described by the FEN string */
+	public static Position fromFen(String fen) throws IllegalArgumentException {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4) {
+			throw new IllegalArgumentException("Incomplete FEN: " + fen);
+		}
+		Position position = new Position();
+		int x = 0;
+		int y = 7;
+		for (char c : fields[0].toCharArray()) {
+			if (c == '/') {
+				x = 0;
+				y--;
+			} else if (c >= '1' && c <= '8') {
+				x += c - '0';
+			} else {
+				int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+				if (type < 0 || x > 7 || y < 0) {
+					throw new IllegalArgumentException("Invalid piece placement in FEN: " + fen);
+				}
+				position.putPiece(Bitboards.square(x++, y), makePiece(Character.isUpperCase(c) ? WHITE : BLACK, type));
+			}
+		}
+		if (position.count(WHITE, KING) != 1 || position.count(BLACK, KING) != 1) {
+			throw new IllegalArgumentException("Both sides need exactly one king: " + fen);
+		}
+		position.setSideToMove(fields[1].equals("b") ? BLACK : WHITE);
+		int castlingRights = 0;
+		for (char c : fields[2].toCharArray()) {
+			int index = "KQkq".indexOf(c);
+			if (index >= 0) {
+				castlingRights |= 1 << index;
+			}
+		}
+		position.setCastlingRights(castlingRights);
+		position.setEnPassantSquare(fields[3].equals("-") ? NO_SQUARE : Bitboards.parseSquare(fields[3]));
+		if (fields.length > 5) {
+			position.halfmoveClock = Integer.parseInt(fields[4]);
+			position.fullmoveNumber = Integer.parseInt(fields[5]);
+		}
+		position.updateCheckers();
+		return position;
+	}
+	
+	/** Describes the position as a FEN string */
+	public String toFen() {
+		StringBuilder fen = new StringBuilder();
+		for (int y = 7; y >= 0; y--) {
+			int empty = 0;
+			for (int x = 0; x < 8; x++) {
+				int piece = board[Bitboards.square(x, y)];
+				if (piece == EMPTY) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					fen.append(empty);
+					empty = 0;
+				}
+				char c = "pnbrqk".charAt(typeOf(piece));
+				fen.append((colorOf(piece) == WHITE) ? Character.toUpperCase(c) : c);
+			}
+			if (empty > 0) {
+				fen.append(empty);
+			}
+			if (y > 0) {
+				fen.append('/');
+			}
+		}
+		fen.append((sideToMove == WHITE) ? " w " : " b ");
+		for (int i = 0; i < 4; i++) {
+			if ((castlingRights & (1 << i)) != 0) {
+				fen.append("KQkq".charAt(i));
+			}
+		}
+		if (castlingRights == 0) {
+			fen.append('-');
+		}
+		fen.append(' ').append((enPassantSquare == NO_SQUARE) ? "-" : Bitboards.squareName(enPassantSquare));
+		fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+		return fen.toString();
+	}
+	
+	public static int makePiece(int color, int type) {
+		return (color << 3) | type;
+	}
+
+	public static int typeOf(int piece) {
+		return piece & 7;
+	}
+
+	public static int colorOf(int piece) {
+		return piece >>> 3;
+	}
+
+	/** Places the piece on the (empty) square */
+	public void putPiece(int square, int piece) {
+		long bit = 1L << square;
+		pieces[typeOf(piece)] |= bit;
+		colors[colorOf(piece)] |= bit;
+		board[square] = piece;
+		key ^= Zobrist.piece(piece, square);
+		if (typeOf(piece) == PAWN) {
+			pawnKey ^= Zobrist.piece(piece, square);
+		}
+		midgameScore[colorOf(piece)] += Evaluation.midgame(piece, square);
+		endgameScore[colorOf(piece)] += Evaluation.endgame(piece, square);
+		phase += Evaluation.phase(piece);
+	}
+
+	/** Removes the piece on the square, returning it */
+	public int removePiece(int square) {
+		int piece = board[square];
+		if (piece != EMPTY) {
+			long bit = 1L << square;
+			pieces[typeOf(piece)] ^= bit;
+			colors[colorOf(piece)] ^= bit;
+			board[square] = EMPTY;
+			key ^= Zobrist.piece(piece, square);
+			if (typeOf(piece) == PAWN) {
+				pawnKey ^= Zobrist.piece(piece, square);
+			}
+			midgameScore[colorOf(piece)] -= Evaluation.midgame(piece, square);
+			endgameScore[colorOf(piece)] -= Evaluation.endgame(piece, square);
+			phase -= Evaluation.phase(piece);
+		}
+		return piece;
+	}
+
+	/** Moves the piece on from to the (empty) square to */
+	public void movePiece(int from, int to) {
+		int piece = board[from];
+		long fromTo = (1L << from) | (1L << to);
+		pieces[typeOf(piece)] ^= fromTo;
+		colors[colorOf(piece)] ^= fromTo;
+		board[from] = EMPTY;
+		board[to] = piece;
+		key ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+		if (typeOf(piece) == PAWN) {
+			pawnKey ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+		}
+		midgameScore[colorOf(piece)] += Evaluation.midgame(piece, to) - Evaluation.midgame(piece, from);
+		endgameScore[colorOf(piece)] += Evaluation.endgame(piece, to) - Evaluation.endgame(piece, from);
+	}
+
+	/** Makes the move, recording what is needed to undo it
+	 * in the journal. Assumes the move is at least pseudo-legal */
+	public void makeMove(int move) {
+		if (journalSize == undoMove.length) {
+			growJournal();
+		}
+		int entry = journalSize++;
+		undoMove[entry] = move;
+		undoCastlingRights[entry] = castlingRights;
+		undoEnPassantSquare[entry] = enPassantSquare;
+		undoHalfmoveClock[entry] = halfmoveClock;
+		undoCheckers[entry] = checkers;
+		undoKey[entry] = key;
+		
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		int captured = EMPTY;
+		boolean isPawnMove = typeOf(board[from]) == PAWN;
+		
+		if (flags == Move.EN_PASSANT) {
+			captured = removePiece(to ^ 8);
+		} else if (Move.isCapture(move)) {
+			captured = removePiece(to);
+		}
+		movePiece(from, to);
+		
+		if (Move.isPromotion(move)) {
+			removePiece(to);
+			putPiece(to, makePiece(sideToMove, Move.promotionType(move)));
+		} else if (flags == Move.KING_CASTLE) {
+			movePiece(to + 1, to - 1);
+		} else if (flags == Move.QUEEN_CASTLE) {
+			movePiece(to - 2, to + 1);
+		}
+		
+		key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+		enPassantSquare = (flags == Move.DOUBLE_PAWN_PUSH) ? (from + to) >>> 1 : NO_SQUARE;
+		halfmoveClock = (isPawnMove || captured != EMPTY) ? 0 : halfmoveClock + 1;
+		castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+		key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.side();
+		undoCaptured[entry] = captured;
+		if (sideToMove == BLACK) {
+			fullmoveNumber++;
+		}
+		sideToMove ^= 1;
+		checkers = attackersTo(kingSquare(sideToMove), sideToMove ^ 1, occupied());
+	}
+	
+	/** Passes the turn to the opponent without moving a piece,
+	 * for null move pruning. Recorded in the journal as
+	 * {@link Move#NONE}, and taken back by unmakeMove. The side
+	 * to move must not be in check */
+	public void makeNullMove() {
+		if (journalSize == undoMove.length) {
+			growJournal();
+		}
+		int entry = journalSize++;
+		undoMove[entry] = Move.NONE;
+		undoCaptured[entry] = EMPTY;
+		undoCastlingRights[entry] = castlingRights;
+		undoEnPassantSquare[entry] = enPassantSquare;
+		undoHalfmoveClock[entry] = halfmoveClock;
+		undoCheckers[entry] = checkers;
+		undoKey[entry] = key;
+		
+		key ^= Zobrist.enPassant(enPassantSquare) ^ Zobrist.side();
+		enPassantSquare = NO_SQUARE;
+		halfmoveClock++;
+		if (sideToMove == BLACK) {
+			fullmoveNumber++;
+		}
+		sideToMove ^= 1;
+		checkers = 0;
+	}
+	
+	/** Takes back the last move made, which may be a null move */
+	public void unmakeMove() throws IllegalStateException {
+		if (journalSize == 0) {
+			throw new IllegalStateException("No moves to undo");
+		}
+		int entry = --journalSize;
+		int move = undoMove[entry];
+		int from = Move.from(move);
+		int to = Move.to(move);
+		int flags = Move.flags(move);
+		sideToMove ^= 1;
+		if (sideToMove == BLACK) {
+			fullmoveNumber--;
+		}
+		
+		if (move != Move.NONE) { //A null move moved no pieces
+			if (Move.isPromotion(move)) {
+				removePiece(to);
+				putPiece(to, makePiece(sideToMove, PAWN));
+			} else if (flags == Move.KING_CASTLE) {
+				movePiece(to - 1, to + 1);
+			} else if (flags == Move.QUEEN_CASTLE) {
+				movePiece(to + 1, to - 2);
+			}
+			movePiece(to, from);
+			
+			int captured = undoCaptured[entry];
+			if (captured != EMPTY) {
+				putPiece((flags == Move.EN_PASSANT) ? to ^ 8 : to, captured);
+			}
+		}
+		castlingRights = undoCastlingRights[entry];
+		enPassantSquare = undoEnPassantSquare[entry];
+		halfmoveClock = undoHalfmoveClock[entry];
+		checkers = undoCheckers[entry];
+		key = undoKey[entry];
+	}
+	
+	/** The number of moves that can be undone */
+	public int getJournalSize() {
+		return journalSize;
+	}
+	
+	/** The last move made, or {@link Move#NONE} */
+	public int getLastMove() {
+		return (journalSize > 0) ? undoMove[journalSize - 1] : Move.NONE;
+	}
+	
+	/** Whether the position occurred before. Only the positions with
+	 * the same side to move since the last capture or pawn move are
+	 * compared, and the search stops at a null move, as the positions
+	 * before it were not reached by real moves */
+	public boolean isRepetition() {
+		return countRepetitions(true) > 0;
+	}
+	
+	/** The number of times the position occurred before. A third
+	 * occurrence of a position is a draw */
+	public int getRepetitions() {
+		return countRepetitions(false);
+	}
+	
+	private int countRepetitions(boolean firstOnly) {
+		int count = 0;
+		int end = Math.min(halfmoveClock, journalSize);
+		for (int distance = 2; distance <= end; distance += 2) {
+			int entry = journalSize - distance;
+			if (undoMove[entry] == Move.NONE || undoMove[entry + 1] == Move.NONE) {
+				break;
+			}
+			if (undoKey[entry] == key) {
+				count++;
+				if (firstOnly) {
+					break;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/** Whether the game is drawn by the fifty-move rule: no
+	 * capture or pawn move in the last 100 plies, unless the
+	 * last one gave checkmate */
+	public boolean isFiftyMoveDraw() {
+		return halfmoveClock >= 100 && (checkers == 0 || MoveGenerator.hasLegalMoves(this));
+	}
+	
+	private void growJournal() {
+		int capacity = undoMove.length * 2;
+		undoMove = Arrays.copyOf(undoMove, capacity);
+		undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+		undoCastlingRights = Arrays.copyOf(undoCastlingRights, capacity);
+		undoEnPassantSquare = Arrays.copyOf(undoEnPassantSquare, capacity);
+		undoHalfmoveClock = Arrays.copyOf(undoHalfmoveClock, capacity);
+		undoCheckers = Arrays.copyOf(undoCheckers, capacity);
+		undoKey = Arrays.copyOf(undoKey, capacity);
+	}
+
+	/** Removes all pieces and resets the state */
+	public void clear() {
+		Arrays.fill(pieces, 0L);
+		Arrays.fill(colors, 0L);
+		Arrays.fill(board, EMPTY);
+		sideToMove = WHITE;
+		castlingRights = 0;
+		enPassantSquare = NO_SQUARE;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		checkers = 0;
+		key = 0;
+		pawnKey = 0;
+		Arrays.fill(midgameScore, 0);
+		Arrays.fill(endgameScore, 0);
+		phase = 0;
+		journalSize = 0;
+	}
+
+	public int pieceAt(int square) {
+		return board[square];
+	}
+
+	public boolean isEmpty(int square) {
+		return board[square] == EMPTY;
+	}
+
+	public long pieces(int type) {
+		return pieces[type];
+	}
+
+	public long pieces(int color, int type) {
+		return pieces[type] & colors[color];
+	}
+
+	public long colorPieces(int color) {
+		return colors[color];
+	}
+
+	public long occupied() {
+		return colors[WHITE] | colors[BLACK];
+	}
+
+	/** Whether the color has any pieces besides pawns and the
+	 * king. Without them, zugzwang is common */
+	public boolean hasNonPawnMaterial(int color) {
+		return (colors[color] & ~(pieces[PAWN] | pieces[KING])) != 0;
+	}
+
+	/** The number of pieces of the given color and type */
+	public int count(int color, int type) {
+		return Long.bitCount(pieces[type] & colors[color]);
+	}
+
+	public int kingSquare(int color) {
+		return Long.numberOfTrailingZeros(pieces[KING] & colors[color]);
+	}
+
+	/** The pieces of the given color that attack the square,
+	 * found by looking backwards from the square with the
+	 * attack tables of each piece type */
+	public long attackersTo(int square, int color, long occupied) {
+		return ((Attacks.pawn(color ^ 1, square) & pieces[PAWN])
+				| (Attacks.knight(square) & pieces[KNIGHT])
+				| (Attacks.king(square) & pieces[KING])
+				| (Attacks.bishop(square, occupied) & (pieces[BISHOP] | pieces[QUEEN]))
+				| (Attacks.rook(square, occupied) & (pieces[ROOK] | pieces[QUEEN]))) & colors[color];
+	}
+	
+	/** Checks if any piece of the given color attacks the square */
+	public boolean isSquareAttacked(int square, int byColor) {
+		long attackers = colors[byColor];
+		long occupied = occupied();
+		return (Attacks.pawn(byColor ^ 1, square) & pieces[PAWN] & attackers) != 0
+				|| (Attacks.knight(square) & pieces[KNIGHT] & attackers) != 0
+				|| (Attacks.bishop(square, occupied) & (pieces[BISHOP] | pieces[QUEEN]) & attackers) != 0
+				|| (Attacks.rook(square, occupied) & (pieces[ROOK] | pieces[QUEEN]) & attackers) != 0
+				|| (Attacks.king(square) & pieces[KING] & attackers) != 0;
+	}
+	
+	/** The pieces giving check to the king of the side to move */
+	public long getCheckers() {
+		return checkers;
+	}
+	
+	public boolean isInCheck() {
+		return checkers != 0;
+	}
+	
+	/** Recomputes the checkers after the position has been
+	 * set up piece by piece */
+	public void updateCheckers() {
+		long king = pieces(sideToMove, KING);
+		checkers = (king == 0) ? 0 : attackersTo(Long.numberOfTrailingZeros(king), sideToMove ^ 1, occupied());
+	}
+	
+	/** The Zobrist key of the position */
+	public long getKey() {
+		return key;
+	}
+	
+	/** Zobrist key of the pawns alone, for the {@link PawnHashTable} */
+	public long getPawnKey() {
+		return pawnKey;
+	}
+
+	/** The sum of the middlegame values of the pieces of the color */
+	public int getMidgameScore(int color) {
+		return midgameScore[color];
+	}
+
+	/** The sum of the endgame values of the pieces of the color */
+	public int getEndgameScore(int color) {
+		return endgameScore[color];
+	}
+
+	/** The game phase, from 0 with only kings and pawns left to
+	 * {@link Evaluation#MAX_PHASE} with all pieces on the board */
+	public int getPhase() {
+		return phase;
+	}
+
+	public int getSideToMove() {
+		return sideToMove;
+	}
+
+	public void setSideToMove(int color) {
+		if (color != sideToMove) {
+			key ^= Zobrist.side();
+		}
+		this.sideToMove = color;
+	}
+
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
+	public void setCastlingRights(int castlingRights) {
+		key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+		this.castlingRights = castlingRights;
+	}
+
+	public int getEnPassantSquare() {
+		return enPassantSquare;
+	}
+
+	public void setEnPassantSquare(int square) {
+		key ^= Zobrist.enPassant(enPassantSquare) ^ Zobrist.enPassant(square);
+		this.enPassantSquare = square;
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public void setHalfmoveClock(int halfmoveClock) {
+		this.halfmoveClock = halfmoveClock;
+	}
+	
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+
+	@Override
+	public String toString() {
+		String symbols = "PNBRQK";
+		StringBuilder str = new StringBuilder();
+		for (int y = 7; y >= 0; y--) {
+			for (int x = 0; x < 8; x++) {
+				int piece = board[Bitboards.square(x, y)];
+				char c = (piece == EMPTY) ? '.' : symbols.charAt(typeOf(piece));
+				str.append(colorOf(piece) == BLACK && piece != EMPTY ? Character.toLowerCase(c) : c).append(' ');
+			}
+			str.append("\n");
+		}
+		str.append((sideToMove == WHITE) ? "White" : "Black").append(" to move\n");
+		return str.toString();
+	}
+}
@@ -0,0 +1,625 @@
+package application.engine;
+
+import java.util.Arrays;
+
+/**
+ *    Alpha-beta (negamax) search of a position with
+ *    iterative deepening: the position is searched to
+ *    depth 1, 2, 3... each time starting with the best
+ *    move found so far, until the {@link TimeManager}
+ *    says there is no time for another iteration. An
+ *    iteration that runs into the hard time limit is
+ *    abandoned, and the best move of the last completed
+ *    iteration is played. Searched positions are stored
+ *    in a {@link TranspositionTable}, and the moves are
+ *    searched in the order given by {@link MoveOrdering}.
+ *    Only the first move of a node is searched with the
+ *    full window; the rest are searched with a null window
+ *    to prove they are worse, and searched again if they
+ *    are not (principal variation search). From depth 4 the
+ *    root is searched in a narrow (aspiration) window around
+ *    the score of the previous iteration. Nodes where
+ *    passing the turn still fails high are pruned (null
+ *    move pruning), and quiet moves late in the ordering
+ *    are searched to a reduced depth first (late move
+ *    reductions).
+ *    At the end of the main search a quiescence search
+ *    follows the captures until the position is quiet.
+ *    Repetitions and fifty-move draws are scored as draws.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class Search {
+
+	/** The maximum number of steps of a search */
+	public static final int MAX_PLY = 64;
+
+	/** Values in centipawns (1/100 of a pawn) */
+	public static final int QUEEN_VALUE = 900, ROOK_VALUE = 500, BISHOP_VALUE = 300,
+			KNIGHT_VALUE = 300, PAWN_VALUE = 100, CHECK_MATE_VALUE = 100000, INFINITY = 1000000;
+
+	/** Scores beyond this are mates, which depend on
+	 * the ply they were found at. In the transposition table they are
+	 * stored as counted from the position itself instead of the root */
+	public static final int WIN_BOUND = CHECK_MATE_VALUE - MAX_PLY;
+
+	/** Margin for delta pruning: a capture is not searched if it
+	 * cannot raise the score to alpha even with this extra gain */
+	public static final int DELTA_MARGIN = 200;
+
+	/** Half the width of the first aspiration window at the root */
+	public static final int ASPIRATION_WINDOW = 50;
+
+	/** Null move pruning is done from this depth. From the
+	 * verification depth, cutoffs are verified by a reduced
+	 * search of the node itself */
+	public static final int NULL_MOVE_MIN_DEPTH = 3, NULL_MOVE_VERIFICATION_DEPTH = 8;
+
+	/** Late move reductions are done from this depth, and for
+	 * the moves after the first LMR_MIN_MOVES in the ordering */
+	public static final int LMR_MIN_DEPTH = 3, LMR_MIN_MOVES = 3;
+
+	/** A history score this high makes the reduction one ply less */
+	private static final int HISTORY_PER_REDUCTION = 8192;
+
+	/** Depths skipped by helper threads of a parallel search, so the
+	 * threads search at different depths. Helper n skips a depth d
+	 * if (d + SKIP_PHASE[i]) / SKIP_SIZE[i] is odd, i = (n - 1) % 20 */
+	private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+	private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+	/** Reductions by depth and move number, growing with both */
+	private static final int[][] REDUCTIONS = new int[64][64];
+
+	static {
+		for (int depth = 1; depth < 64; depth++) {
+			for (int moveNumber = 1; moveNumber < 64; moveNumber++) {
+				REDUCTIONS[depth][moveNumber] = (int) (0.5 + Math.log(depth) * Math.log(moveNumber) / 2.0);
+			}
+		}
+	}
+
+	private final TranspositionTable table;
+	private final MoveList[] moveLists = MoveList.createStack(MAX_PLY + 1);
+	private final MoveOrdering ordering = new MoveOrdering();
+	private final PawnHashTable pawnTable = new PawnHashTable();
+
+	//Triangular table of principal variations: the one from each ply is stored in its row from the ply on
+	private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private final int[] pvLength = new int[MAX_PLY + 1];
+	private int[] principalVariation = new int[0];
+	private Position position;
+	private TimeManager time;
+	private boolean aborted;
+	private boolean queenPromotionsOnly;
+	private boolean quiescenceChecks;
+	private int helperIndex;
+	private Runnable iterationListener;
+
+	private int bestMove;
+	private int bestScore;
+	private int rootScore;
+	private int completedDepth;
+
+	private long nodes;
+	private long leafNodes;
+	private long betaCutoffs;
+	private long tableCutoffs;
+	private long quiescenceNodes;
+	private long deltaPrunes;
+	private long nullMoveCutoffs;
+	private long reSearches;
+
+	public Search(TranspositionTable table) {
+		this.table = table;
+	}
+
+	public MoveOrdering getMoveOrdering() {
+		return ordering;
+	}
+
+	public PawnHashTable getPawnTable() {
+		return pawnTable;
+	}
+
+	/** Makes the search a helper thread of a parallel search (see
+	 * {@link ParallelSearch}), 0 for the main thread. A helper skips
+	 * some depths, and may be stopped before it completes depth 1 */
+	public void setHelperIndex(int helperIndex) {
+		this.helperIndex = helperIndex;
+	}
+
+	/** Runs the listener on the search thread after each completed iteration */
+	public void setIterationListener(Runnable iterationListener) {
+		this.iterationListener = iterationListener;
+	}
+
+	/** Whether promotions to other pieces than queens are left
+	 * out at the root, for games that only promote to queens */
+	public void setQueenPromotionsOnly(boolean queenPromotionsOnly) {
+		this.queenPromotionsOnly = queenPromotionsOnly;
+	}
+
+	/** Whether the first ply of the quiescence search also
+	 * searches quiet moves that give check */
+	public void setQuiescenceChecks(boolean quiescenceChecks) {
+		this.quiescenceChecks = quiescenceChecks;
+	}
+
+	/** Searches the position until the time runs out or the
+	 * maximum depth is reached, and returns the best move, or
+	 * {@link Move#NONE} if there are no legal moves. The first
+	 * iteration is always completed, so there is always a move.
+	 * The caller starts a new search of the transposition table */
+	public int search(Position position, TimeManager time, int maxDepth) {
+		prepare(position, time);
+		MoveList rootMoves = moveLists[0];
+		if (rootMoves.generateLegalMoves(this.position) == 0) {
+			return Move.NONE;
+		}
+		for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+			if (helperIndex > 0 && isSkipped(depth)) {
+				continue;
+			}
+			//Helpers keep searching until the main thread stops them
+			if ((helperIndex > 0) ? time.isStopped() : depth > 1 && !time.canStartIteration()) {
+				break;
+			}
+			searchIteration(rootMoves, depth);
+			if (aborted) {
+				break;
+			}
+			completedDepth = depth;
+			if (iterationListener != null) {
+				iterationListener.run();
+			}
+			//A mate within the depth is proven, and deeper iterations only repeat it
+			if (helperIndex == 0 && isMateWithin(bestScore, depth)) {
+				break;
+			}
+		}
+		return bestMove;
+	}
+
+	/** Whether the score is a mate, for either side, in at most the plies */
+	static boolean isMateWithin(int score, int plies) {
+		return Math.abs(score) > WIN_BOUND && CHECK_MATE_VALUE - Math.abs(score) <= plies;
+	}
+
+	/** Resets the search for a new position */
+	void prepare(Position position, TimeManager time) {
+		this.position = new Position(position);
+		this.time = time;
+		aborted = false;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+		principalVariation = new int[0];
+		resetStatistics();
+		ordering.newSearch();
+	}
+
+	/** Sets the node counts and other statistics to 0 */
+	void resetStatistics() {
+		nodes = 0;
+		leafNodes = 0;
+		betaCutoffs = 0;
+		tableCutoffs = 0;
+		quiescenceNodes = 0;
+		deltaPrunes = 0;
+		nullMoveCutoffs = 0;
+		reSearches = 0;
+		pawnTable.resetStatistics();
+	}
+
+	/** Searches one move of the prepared root position to the
+	 * depth in the window, when the root moves are split between
+	 * threads (see {@link ParallelSearch}). Returns the score of
+	 * the move for the side to move at the root */
+	int searchRootMove(int move, int depth, int alpha, int beta) {
+		completedDepth = depth - 1; //The first iteration is completed before the time may run out
+		position.makeMove(move);
+		int score = -negaMax(-beta, -alpha, depth - 1, 1, true);
+		position.unmakeMove();
+		updatePrincipalVariation(0, move);
+		return score;
+	}
+
+	/** The principal variation of the last root move searched */
+	int[] getRootMovePrincipalVariation() {
+		return Arrays.copyOf(pvTable[0], pvLength[0]);
+	}
+
+	boolean isAborted() {
+		return aborted;
+	}
+
+	private boolean isSkipped(int depth) {
+		int i = (helperIndex - 1) % SKIP_SIZE.length;
+		return ((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) % 2 != 0;
+	}
+
+	/** Searches the root to the depth, first in an aspiration window
+	 * around the previous score. The window is widened on the side
+	 * the score falls outside of until the score is inside it */
+	private void searchIteration(MoveList rootMoves, int depth) {
+		int delta = ASPIRATION_WINDOW;
+		int alpha = (depth >= 4) ? bestScore - delta : -INFINITY;
+		int beta = (depth >= 4) ? bestScore + delta : INFINITY;
+		while (true) {
+			int move = searchRoot(rootMoves, depth, alpha, beta);
+			if (aborted) {
+				return;
+			}
+			delta *= 2;
+			if (rootScore <= alpha && alpha > -INFINITY) {
+				alpha = (delta > QUEEN_VALUE) ? -INFINITY : Math.max(alpha - delta, -INFINITY);
+			} else if (rootScore >= beta && beta < INFINITY) {
+				beta = (delta > QUEEN_VALUE) ? INFINITY : Math.min(beta + delta, INFINITY);
+			} else {
+				bestMove = move;
+				bestScore = rootScore;
+				principalVariation = Arrays.copyOf(pvTable[0], pvLength[0]);
+				table.store(position.getKey(), move, rootScore, depth, TranspositionTable.EXACT);
+				return;
+			}
+		}
+	}
+
+	/** Searches each root move in the window, starting with the
+	 * best move of the previous iteration. Sets the root score,
+	 * and returns the best move */
+	private int searchRoot(MoveList rootMoves, int depth, int alpha, int beta) {
+		pvLength[0] = 0;
+		ordering.scoreMoves(position, rootMoves, bestMove, 0);
+		int best = Move.NONE;
+		boolean first = true;
+		for (int i = 0; i < rootMoves.size(); i++) {
+			int move = rootMoves.pickNext(i);
+			if (queenPromotionsOnly && Move.isPromotion(move) && Move.promotionType(move) != Position.QUEEN) {
+				continue;
+			}
+			position.makeMove(move);
+			int score;
+			if (first) {
+				score = -negaMax(-beta, -alpha, depth - 1, 1, true);
+			} else {
+				score = -negaMax(-alpha - 1, -alpha, depth - 1, 1, true);
+				if (score > alpha && score < beta) {
+					score = -negaMax(-beta, -alpha, depth - 1, 1, true);
+				}
+			}
+			position.unmakeMove();
+			first = false;
+			if (aborted) {
+				return Move.NONE;
+			}
+			if (score > alpha) {
+				alpha = score;
+				best = move;
+				updatePrincipalVariation(0, move);
+				if (score >= beta) {
+					break;
+				}
+			}
+		}
+		rootScore = alpha;
+		return best;
+	}
+
+	/** Finds the optimal move to make assuming the
+	 *  opponent plays the best moves by depth first
+	 *  searching through the possible move tree.
+	 *  Positions already searched deep enough are
+	 *  looked up in the transposition table */
+	private int negaMax(int alpha, int beta, int depth, int ply, boolean allowNullMove) {
+		pvLength[ply] = ply;
+		checkTime();
+		if (aborted) {
+			return 0;
+		}
+		if (position.isRepetition() || position.isFiftyMoveDraw()) {
+			return 0;
+		}
+		if (depth <= 0) {
+			return quiescence(alpha, beta, ply, true);
+		}
+		if (ply == MAX_PLY) {
+			return evaluatePosition();
+		}
+		int score = 0;
+		boolean pvNode = beta - alpha > 1;
+
+		//Cutoffs are not taken in the principal variation, so it is not cut short
+		long key = position.getKey();
+		long entry = table.probe(key);
+		int hashMove = TranspositionTable.getMove(entry);
+		if (!pvNode && entry != 0 && TranspositionTable.getDepth(entry) >= depth) {
+			int bound = TranspositionTable.getBound(entry);
+			score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+			if (bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+					|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+				tableCutoffs++;
+				return Math.max(alpha, Math.min(beta, score));
+			}
+		}
+
+		//Null move pruning: if passing the turn still fails high, a real
+		//move will too. Not done in pawn endings, where zugzwang is common
+		boolean inCheck = position.isInCheck();
+		if (allowNullMove && !pvNode && !inCheck && depth >= NULL_MOVE_MIN_DEPTH
+				&& position.hasNonPawnMaterial(position.getSideToMove()) && evaluatePosition() >= beta) {
+			int reduction = (depth > 6) ? 3 : 2;
+			position.makeNullMove();
+			score = -negaMax(-beta, -beta + 1, depth - 1 - reduction, ply + 1, false);
+			position.unmakeMove();
+			if (aborted) {
+				return 0;
+			}
+			if (score >= beta && (depth < NULL_MOVE_VERIFICATION_DEPTH
+					|| negaMax(beta - 1, beta, depth - reduction, ply, false) >= beta)) {
+				nullMoveCutoffs++;
+				return beta;
+			}
+		}
+
+		MoveList moves = moveLists[ply];
+		if (moves.generateLegalMoves(position) == 0) {
+			return getTerminalScore(ply);
+		}
+		ordering.scoreMoves(position, moves, hashMove, ply);
+
+		int bestMove = Move.NONE;
+		int bound = TranspositionTable.UPPER_BOUND;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.pickNext(i);
+			boolean quiet = !Move.isCapture(move) && !Move.isPromotion(move);
+			position.makeMove(move);
+			if (i == 0) {
+				score = -negaMax(-beta, -alpha, depth - 1, ply + 1, true);
+			} else {
+				int reduction = 0;
+				if (depth >= LMR_MIN_DEPTH && i >= LMR_MIN_MOVES && quiet && !inCheck && !position.isInCheck()
+						&& move != ordering.getKiller(ply, 0) && move != ordering.getKiller(ply, 1)) {
+					reduction = REDUCTIONS[Math.min(depth, 63)][Math.min(i, 63)]
+							- moves.getScore(i) / HISTORY_PER_REDUCTION - ((pvNode) ? 1 : 0);
+					reduction = Math.max(0, Math.min(reduction, depth - 2));
+				}
+				score = -negaMax(-alpha - 1, -alpha, depth - 1 - reduction, ply + 1, true);
+				if (reduction > 0 && score > alpha) {
+					reSearches++; //The reduced search beat alpha, verify it at full depth
+					score = -negaMax(-alpha - 1, -alpha, depth - 1, ply + 1, true);
+				}
+				if (score > alpha && score < beta) {
+					score = -negaMax(-beta, -alpha, depth - 1, ply + 1, true);
+				}
+			}
+			position.unmakeMove();
+			if (aborted) {
+				return 0;
+			}
+
+			if (score >= beta) {
+				betaCutoffs++;
+				if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+					ordering.updateQuietCutoff(position, move, ply, depth, moves, i);
+				}
+				table.store(key, move, scoreToTable(beta, ply), depth, TranspositionTable.LOWER_BOUND);
+				return beta;   // fail hard beta-cutoff
+			}
+			if (score > alpha) {
+				alpha = score; // alpha acts like max in MiniMax
+				bestMove = move;
+				bound = TranspositionTable.EXACT;
+				updatePrincipalVariation(ply, move);
+			}
+		}
+		table.store(key, bestMove, scoreToTable(alpha, ply), depth, bound);
+		return alpha;
+	}
+
+	/** Aborts the search if the time or the nodes are used up,
+	 * checked every {@link TimeManager#CHECK_INTERVAL} nodes. The
+	 * main thread always completes depth 1, so it has a move to play */
+	private void checkTime() {
+		if ((++nodes & (TimeManager.CHECK_INTERVAL - 1)) == 0) {
+			boolean nodeLimitReached = time.addNodes(TimeManager.CHECK_INTERVAL);
+			if ((completedDepth > 0 || helperIndex > 0) && (nodeLimitReached || time.isHardLimitReached())) {
+				aborted = true;
+			}
+		}
+	}
+
+	/** The move continues the principal variation from the next ply */
+	private void updatePrincipalVariation(int ply, int move) {
+		pvTable[ply][ply] = move;
+		System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, pvLength[ply + 1] - (ply + 1));
+		pvLength[ply] = pvLength[ply + 1];
+	}
+
+	/** Searches the captures (and promotions) until the position
+	 * is quiet, so it is never evaluated in the middle of an
+	 * exchange. The side to move may instead stand pat, i.e. keep
+	 * the evaluation of the position as it is, unless it is in
+	 * check, in which case all moves are searched */
+	private int quiescence(int alpha, int beta, int ply, boolean firstPly) {
+		pvLength[ply] = ply;
+		checkTime();
+		if (aborted) {
+			return 0;
+		}
+		quiescenceNodes++;
+		if (ply == MAX_PLY) {
+			return evaluatePosition();
+		}
+		
+		MoveList moves = moveLists[ply];
+		boolean inCheck = position.isInCheck();
+		int standPat = -INFINITY;
+		if (inCheck) {
+			if (moves.generateLegalMoves(position) == 0) {
+				return getTerminalScore(ply);
+			}
+		} else {
+			standPat = evaluatePosition();
+			if (standPat >= beta) {
+				return beta;
+			}
+			if (standPat > alpha) {
+				alpha = standPat;
+			}
+			generateQuiescenceMoves(moves, firstPly && quiescenceChecks);
+		}
+		ordering.scoreMoves(position, moves, Move.NONE, ply);
+		
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.pickNext(i);
+			if (Move.isPromotion(move) && Move.promotionType(move) != Position.QUEEN) {
+				continue;
+			}
+			if (!inCheck && Move.isCapture(move) && !Move.isPromotion(move)
+					&& standPat + getCapturedValue(move) + DELTA_MARGIN <= alpha) {
+				deltaPrunes++;
+				continue;
+			}
+			position.makeMove(move);
+			int score = -quiescence(-beta, -alpha, ply + 1, false);
+			position.unmakeMove();
+			if (aborted) {
+				return 0;
+			}
+			
+			if (score >= beta) {
+				return beta;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+		}
+		return alpha;
+	}
+	
+	/** Fills the list with the captures and promotions, and if
+	 * withChecks is set, the quiet moves that give check */
+	private void generateQuiescenceMoves(MoveList moves, boolean withChecks) {
+		if (!withChecks) {
+			moves.generateCaptures(position);
+			return;
+		}
+		int count = moves.generateLegalMoves(position);
+		moves.clear(); //The list is compacted in place, reading ahead of the moves kept
+		for (int i = 0; i < count; i++) {
+			int move = moves.get(i);
+			if (Move.isCapture(move) || Move.isPromotion(move) || givesCheck(move)) {
+				moves.add(move);
+			}
+		}
+	}
+	
+	private boolean givesCheck(int move) {
+		position.makeMove(move);
+		boolean check = position.isInCheck();
+		position.unmakeMove();
+		return check;
+	}
+	
+	/** The value of the piece the move captures */
+	private int getCapturedValue(int move) {
+		if (Move.flags(move) == Move.EN_PASSANT) {
+			return PAWN_VALUE;
+		}
+		switch (Position.typeOf(position.pieceAt(Move.to(move)))) {
+		case Position.QUEEN: return QUEEN_VALUE;
+		case Position.ROOK: return ROOK_VALUE;
+		case Position.BISHOP: return BISHOP_VALUE;
+		case Position.KNIGHT: return KNIGHT_VALUE;
+		default: return PAWN_VALUE;
+		}
+	}
+
+	/** Evaluates the position for the side to move (see
+	 * {@link Evaluation}). Mate and stalemate are found by
+	 * the nodes that generate the moves of the position */
+	private int evaluatePosition() {
+		leafNodes++;
+		return Evaluation.evaluate(position, pawnTable);
+	}
+
+	/** The score of a position without legal moves: mate, the
+	 * sooner the worse, or 0 for stalemate */
+	private int getTerminalScore(int ply) {
+		return (position.isInCheck()) ? -CHECK_MATE_VALUE + ply : 0;
+	}
+
+	/** The score counted from the position at the ply, for the table */
+	private static int scoreToTable(int score, int ply) {
+		return (score > WIN_BOUND) ? score + ply : (score < -WIN_BOUND) ? score - ply : score;
+	}
+
+	/** The score from the table counted from the root */
+	private static int scoreFromTable(int score, int ply) {
+		return (score > WIN_BOUND) ? score - ply : (score < -WIN_BOUND) ? score + ply : score;
+	}
+
+	/** The best move of the last completed iteration */
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	/** The score of the best move for the side to move, in centipawns */
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	/** The moves expected to be played from the position, found
+	 * by the last completed iteration, starting with the best move */
+	public int[] getPrincipalVariation() {
+		return principalVariation.clone();
+	}
+
+	/** The depth of the last completed iteration */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getLeafNodes() {
+		return leafNodes;
+	}
+
+	public long getBetaCutoffs() {
+		return betaCutoffs;
+	}
+
+	public long getTableCutoffs() {
+		return tableCutoffs;
+	}
+
+	/** The number of nodes searched by the quiescence search,
+	 * included in {@link #getNodes()} */
+	public long getQuiescenceNodes() {
+		return quiescenceNodes;
+	}
+
+	/** The number of nodes pruned by null move pruning */
+	public long getNullMoveCutoffs() {
+		return nullMoveCutoffs;
+	}
+
+	/** The number of reduced moves searched again at full depth */
+	public long getReSearches() {
+		return reSearches;
+	}
+
+	/** The number of captures skipped by delta pruning */
+	public long getDeltaPrunes() {
+		return deltaPrunes;
+	}
+}
@@ -0,0 +1,127 @@
+package application.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import application.StopWatch;
+
+/**
+ *    Decides how long a search may run. The budget for a
+ *    move is found from the time left on the clock, the
+ *    increment and the number of moves until the next time
+ *    control. A new iteration of the search is only started
+ *    before the soft limit, while the hard limit stops the
+ *    search in the middle of an iteration. The search asks
+ *    {@link #isHardLimitReached()} every {@link #CHECK_INTERVAL}
+ *    nodes, so the clock is not read at every node. A
+ *    search may also be limited to a number of nodes,
+ *    counted over all its threads.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class TimeManager {
+
+	/** Nodes searched between each check of the hard limit (a power of two) */
+	public static final int CHECK_INTERVAL = 1024;
+
+	/** Time (ms) kept back for making the move after the search */
+	public static final long MOVE_OVERHEAD = 30;
+
+	/** The number of moves the time left is shared between
+	 * when the number of moves to the time control is unknown */
+	public static final int DEFAULT_MOVES_TO_GO = 30;
+
+	private final StopWatch clock = new StopWatch();
+	private long softLimit;
+	private long hardLimit;
+	private long nodeLimit = Long.MAX_VALUE;
+	private final AtomicLong nodes = new AtomicLong();
+	private volatile boolean stopped;
+
+	/** Starts the clock for a move with the time left (ms), the
+	 * increment per move (ms) and the number of moves until the
+	 * next time control, 0 if there is none */
+	public void start(long timeLeft, long increment, int movesToGo) {
+		int moves = (movesToGo > 0) ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+		long available = Math.max(timeLeft - MOVE_OVERHEAD, 1);
+		softLimit = Math.min(available / moves + increment * 3 / 4, available);
+
+		//An iteration may overrun the soft limit, but never use more than half the time left
+		hardLimit = Math.min(softLimit * 4, (moves == 1) ? available : available / 2);
+		hardLimit = Math.max(hardLimit, softLimit);
+		startClock();
+	}
+
+	/** Starts the clock for a search of a fixed time (ms) */
+	public void startMoveTime(long moveTime) {
+		softLimit = Math.max(moveTime - MOVE_OVERHEAD, 1);
+		hardLimit = softLimit;
+		startClock();
+	}
+
+	/** Starts the clock for a search that runs until it is
+	 * stopped or reaches its maximum depth */
+	public void startInfinite() {
+		softLimit = Long.MAX_VALUE;
+		hardLimit = Long.MAX_VALUE;
+		startClock();
+	}
+
+	/** The search reads the volatile stopped flag before the limits
+	 * and the clock, so writing it last makes the new limits seen by
+	 * a search that is already running, as when a ponder search
+	 * becomes a timed search */
+	private void startClock() {
+		nodeLimit = Long.MAX_VALUE;
+		nodes.set(0);
+		clock.start();
+		stopped = false;
+	}
+
+	/** Limits the number of nodes all search threads together may
+	 * search, on top of the time. Set after the clock is started */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/** Adds the nodes a thread has searched since its last check to
+	 * the total of all threads, and returns whether the total has
+	 * reached the node limit */
+	public boolean addNodes(long searched) {
+		return nodes.addAndGet(searched) >= nodeLimit;
+	}
+
+	/** Stops the search as soon as it next checks the hard limit.
+	 * May be called from another thread */
+	public void stop() {
+		stopped = true;
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/** Whether there is time to start another iteration */
+	public boolean canStartIteration() {
+		return !stopped && getElapsedMillis() < softLimit;
+	}
+
+	/** Whether the search must stop right away */
+	public boolean isHardLimitReached() {
+		return stopped || getElapsedMillis() >= hardLimit;
+	}
+
+	public long getElapsedMillis() {
+		return clock.getElapsedTime() / 1000000;
+	}
+
+	public long getSoftLimit() {
+		return softLimit;
+	}
+
+	public long getHardLimit() {
+		return hardLimit;
+	}
+}
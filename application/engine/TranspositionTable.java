@@ -0,0 +1,122 @@
+package application.engine;
+
+import java.util.Arrays;
+
+/**
+ *    Fixed size hash table of search results, indexed by
+ *    the Zobrist key of the position. Each entry holds the
+ *    key, the best move, the score, the depth searched and
+ *    whether the score is exact or a bound, packed into two
+ *    longs. Entries come in buckets of two: the first keeps
+ *    the deepest result, the second is always replaced.
+ *    Entries from earlier searches are replaced first.
+ *    The table may be shared by several search threads
+ *    without locking: the key is stored XORed with the
+ *    data, so an entry written by two threads at once (or
+ *    read while being written) fails the key check instead
+ *    of giving another position's result.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class TranspositionTable {
+
+	/** Bound types. A stored entry always has one, so an empty entry is 0 */
+	public static final int UPPER_BOUND = 1, LOWER_BOUND = 2, EXACT = 3;
+
+	/** Bytes per entry: the key and the packed data */
+	private static final int ENTRY_SIZE = 16;
+
+	private long[] keys;
+	private long[] data;
+	private int bucketMask;
+	private int generation;
+
+	public TranspositionTable(int megabytes) {
+		resize(megabytes);
+	}
+
+	/** Allocates the largest power of two number of buckets
+	 * that fits in the size. All entries are cleared */
+	public void resize(int megabytes) {
+		long entries = Math.max((megabytes * 1024L * 1024L) / ENTRY_SIZE, 2);
+		int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 29));
+		keys = new long[2 * buckets];
+		data = new long[2 * buckets];
+		bucketMask = buckets - 1;
+		generation = 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(data, 0L);
+		generation = 0;
+	}
+
+	/** Called before each search, so the entries of
+	 * earlier searches are replaced before newer ones */
+	public void newSearch() {
+		generation = (generation + 1) & 63;
+	}
+
+	/** The packed entry for the position, or 0 if it is not stored */
+	public long probe(long key) {
+		int index = bucketIndex(key);
+		long entry = data[index];
+		if ((keys[index] ^ entry) == key && entry != 0) {
+			return entry;
+		}
+		entry = data[index + 1];
+		if ((keys[index + 1] ^ entry) == key && entry != 0) {
+			return entry;
+		}
+		return 0;
+	}
+
+	/** Stores the result of a search of the position. Replaces the
+	 * first entry of the bucket if it holds the same position, a
+	 * shallower result or a result from an earlier search, and
+	 * otherwise the second entry */
+	public void store(long key, int move, int score, int depth, int bound) {
+		int index = bucketIndex(key);
+		long first = data[index];
+		if ((keys[index] ^ first) != key && first != 0 && getGeneration(first) == generation
+				&& getDepth(first) > depth) {
+			index++;
+		}
+		long old = data[index];
+		if (move == Move.NONE && (keys[index] ^ old) == key) {
+			move = getMove(old); //Keep the best move of an earlier search of the position
+		}
+		long entry = (move & 0xFFFFL) | ((score & 0xFFFFFFFFL) << 16) | ((long) (depth & 0xFF) << 48)
+				| ((long) bound << 56) | ((long) generation << 58);
+		keys[index] = key ^ entry;
+		data[index] = entry;
+	}
+
+	private int bucketIndex(long key) {
+		return ((int) key & bucketMask) << 1;
+	}
+
+	public static int getMove(long entry) {
+		return (int) (entry & 0xFFFF);
+	}
+
+	public static int getScore(long entry) {
+		return (int) (entry >>> 16);
+	}
+
+	public static int getDepth(long entry) {
+		return (int) (entry >>> 48) & 0xFF;
+	}
+
+	public static int getBound(long entry) {
+		return (int) (entry >>> 56) & 3;
+	}
+
+	private static int getGeneration(long entry) {
+		return (int) (entry >>> 58);
+	}
+}
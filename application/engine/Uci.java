@@ -0,0 +1,318 @@
+package application.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *    Runs the engine with the UCI (Universal Chess Interface)
+ *    protocol over standard input and output, so it can be
+ *    used by chess GUIs and engine testing tools without the
+ *    JavaFX application. Supports "position" (startpos or
+ *    fen, with moves), "go" (depth, movetime, wtime, btime,
+ *    winc, binc, movestogo, nodes and infinite), "stop",
+ *    "isready", "ucinewgame" and the options Hash and Threads.
+ *    The input is read on its own thread, while each "go"
+ *    searches on a search thread, so "stop" is handled while
+ *    the search runs. An info line is sent after each
+ *    iteration. Any other command but "isready" stops
+ *    a running search first. Only engine classes are loaded.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public class Uci {
+
+	public static final String NAME = "ChessWiz";
+	public static final String AUTHOR = "Claus Martinsen";
+
+	/** Size of the transposition table (MB) before the Hash option is set */
+	public static final int DEFAULT_HASH = 16;
+	public static final int MAX_HASH = 4096;
+
+	private final TranspositionTable table = new TranspositionTable(DEFAULT_HASH);
+	private final ParallelSearch search = new ParallelSearch(table);
+	private final ExecutorService searchThread = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "UCI search");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Position position = Position.fromFen(Position.START_FEN);
+	private TimeManager time = new TimeManager();
+	private Future<?> running;
+
+	/** Set by "stop" and the commands that stop the search, and
+	 * only by them, so "go infinite" holds back its best move
+	 * until then even if the search itself has ended */
+	private boolean stopRequested;
+
+	public Uci() {
+		search.setIterationListener(() -> sendInfo(time));
+	}
+
+	/** Reads and handles commands until "quit" or the end of the input */
+	public void run(BufferedReader input) throws IOException {
+		String line;
+		while ((line = input.readLine()) != null) {
+			if (!handle(line.trim())) {
+				break;
+			}
+		}
+		stop();
+		searchThread.shutdown();
+	}
+
+	/** Handles one command, returning false on "quit" */
+	boolean handle(String line) {
+		String[] tokens = line.split("\\s+");
+		switch (tokens[0]) {
+		case "uci":
+			send("id name " + NAME);
+			send("id author " + AUTHOR);
+			send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+			send("option name Threads type spin default 1 min 1 max " + ParallelSearch.MAX_THREADS);
+			send("uciok");
+			break;
+		case "isready":
+			send("readyok");
+			break;
+		case "ucinewgame":
+			stop();
+			table.clear();
+			position = Position.fromFen(Position.START_FEN);
+			break;
+		case "setoption":
+			stop();
+			setOption(tokens);
+			break;
+		case "position":
+			stop();
+			setPosition(tokens);
+			break;
+		case "go":
+			stop();
+			go(tokens);
+			break;
+		case "stop":
+			stop();
+			break;
+		case "quit":
+			return false;
+		default:
+			if (!line.isEmpty()) {
+				send("info string Unknown command: " + line);
+			}
+		}
+		return true;
+	}
+
+	/** "setoption name <name> value <value>" */
+	private void setOption(String[] tokens) {
+		String name = getValue(tokens, "name", "value");
+		String value = getValue(tokens, "value", null);
+		try {
+			if (name.equalsIgnoreCase("Hash")) {
+				table.resize(Math.max(1, Math.min(Integer.parseInt(value), MAX_HASH)));
+			} else if (name.equalsIgnoreCase("Threads")) {
+				search.setThreads(Math.max(1, Math.min(Integer.parseInt(value), ParallelSearch.MAX_THREADS)));
+			} else {
+				send("info string Unknown option: " + name);
+			}
+		} catch (NumberFormatException e) {
+			send("info string Not a number: " + value);
+		}
+	}
+
+	/** The words after the key up to the end word, or "" */
+	private static String getValue(String[] tokens, String key, String end) {
+		StringBuilder value = new StringBuilder();
+		boolean found = false;
+		for (String token : tokens) {
+			if (found && token.equals(end)) {
+				break;
+			}
+			if (found) {
+				value.append((value.length() > 0) ? " " : "").append(token);
+			}
+			found |= token.equals(key);
+		}
+		return value.toString();
+	}
+
+	/** "position startpos|fen <fen> [moves <move>...]". The moves
+	 * are made on the position, so repetitions are known to the search */
+	private void setPosition(String[] tokens) {
+		int movesIndex = tokens.length;
+		for (int i = 1; i < tokens.length; i++) {
+			if (tokens[i].equals("moves")) {
+				movesIndex = i;
+				break;
+			}
+		}
+		Position next;
+		try {
+			if (tokens.length > 1 && tokens[1].equals("fen")) {
+				next = Position.fromFen(String.join(" ", Arrays.copyOfRange(tokens, 2, movesIndex)));
+			} else {
+				next = Position.fromFen(Position.START_FEN);
+			}
+		} catch (IllegalArgumentException e) {
+			send("info string Invalid position: " + e.getMessage());
+			return;
+		}
+		for (int i = movesIndex + 1; i < tokens.length; i++) {
+			int move = findMove(next, tokens[i]);
+			if (move == Move.NONE) {
+				send("info string Illegal move: " + tokens[i]);
+				return;
+			}
+			next.makeMove(move);
+		}
+		position = next;
+	}
+
+	/** The legal move written in coordinate notation, or {@link Move#NONE} */
+	private static int findMove(Position position, String text) {
+		MoveList moves = new MoveList();
+		moves.generateLegalMoves(position);
+		for (int i = 0; i < moves.size(); i++) {
+			if (Move.toString(moves.get(i)).equals(text)) {
+				return moves.get(i);
+			}
+		}
+		return Move.NONE;
+	}
+
+	/** Starts a search of the position on the search thread */
+	private void go(String[] tokens) {
+		long timeLeft = -1, increment = 0, moveTime = -1, nodes = -1;
+		int movesToGo = 0, depth = Search.MAX_PLY;
+		boolean infinite = false;
+		String timeKey = (position.getSideToMove() == Position.WHITE) ? "wtime" : "btime";
+		String incrementKey = (position.getSideToMove() == Position.WHITE) ? "winc" : "binc";
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				String token = tokens[i];
+				if (token.equals("infinite")) {
+					infinite = true;
+				} else if (i + 1 < tokens.length) {
+					if (token.equals(timeKey)) {
+						timeLeft = Long.parseLong(tokens[++i]);
+					} else if (token.equals(incrementKey)) {
+						increment = Long.parseLong(tokens[++i]);
+					} else if (token.equals("movestogo")) {
+						movesToGo = Integer.parseInt(tokens[++i]);
+					} else if (token.equals("movetime")) {
+						moveTime = Long.parseLong(tokens[++i]);
+					} else if (token.equals("depth")) {
+						depth = Math.max(1, Math.min(Integer.parseInt(tokens[++i]), Search.MAX_PLY));
+					} else if (token.equals("nodes")) {
+						nodes = Long.parseLong(tokens[++i]);
+					}
+				}
+			}
+		} catch (NumberFormatException e) {
+			send("info string Invalid go command: " + e.getMessage());
+			return;
+		}
+
+		time = new TimeManager();
+		if (moveTime >= 0) {
+			time.startMoveTime(moveTime);
+		} else if (timeLeft >= 0 && !infinite) {
+			time.start(timeLeft, increment, movesToGo);
+		} else {
+			time.startInfinite();
+		}
+		if (nodes >= 0) {
+			time.setNodeLimit(nodes);
+		}
+		synchronized (this) {
+			stopRequested = false;
+		}
+		Position root = new Position(position);
+		TimeManager searchTime = time;
+		int maxDepth = depth;
+		boolean waitForStop = infinite;
+		running = searchThread.submit(() -> search(root, searchTime, maxDepth, waitForStop));
+	}
+
+	/** Searches on the search thread and sends the result */
+	private void search(Position root, TimeManager searchTime, int maxDepth, boolean waitForStop) {
+		int move = search.search(root, searchTime, maxDepth);
+		synchronized (this) {
+			while (waitForStop && !stopRequested) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+		send("bestmove " + ((move == Move.NONE) ? "0000" : Move.toString(move)));
+	}
+
+	private void sendInfo(TimeManager searchTime) {
+		int score = search.getBestScore();
+		String scoreText;
+		if (Math.abs(score) > Search.CHECK_MATE_VALUE - Search.MAX_PLY) {
+			int plies = Search.CHECK_MATE_VALUE - Math.abs(score);
+			scoreText = "mate " + ((score > 0) ? (plies + 1) / 2 : -(plies / 2));
+		} else {
+			scoreText = "cp " + score;
+		}
+		long millis = Math.max(searchTime.getElapsedMillis(), 1);
+		long nodes = search.getNodes();
+		send("info depth " + search.getCompletedDepth() + " score " + scoreText + " nodes " + nodes
+				+ " nps " + (nodes * 1000 / millis) + " time " + millis
+				+ " pv " + Move.toString(search.getPrincipalVariation()));
+	}
+
+	/** Stops the running search, which then sends its best move */
+	private void stop() {
+		synchronized (this) {
+			stopRequested = true;
+			time.stop();
+			notifyAll();
+		}
+		waitForSearch();
+	}
+
+	/** Waits until the running search, if any, has sent its best move */
+	private void waitForSearch() {
+		if (running == null) {
+			return;
+		}
+		try {
+			running.get();
+		} catch (Exception e) {
+			send("info string Search failed: " + e);
+		}
+		running = null;
+	}
+
+	private static void send(String message) {
+		System.out.println(message);
+		System.out.flush();
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Uci uci = new Uci();
+		Thread reader = new Thread(() -> {
+			try {
+				uci.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+			} catch (IOException e) {
+				send("info string " + e.getMessage());
+			}
+		}, "UCI input");
+		reader.start();
+		reader.join();
+	}
+}
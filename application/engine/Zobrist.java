@@ -0,0 +1,92 @@
+package application.engine;
+
+/**
+ *    Random numbers for Zobrist hashing. The key of a
+ *    position is the XOR of one number for each piece on
+ *    its square, the castling rights, the file of the en
+ *    passant square and the side to move, so a move only
+ *    has to XOR in and out the few numbers that change.
+ *    The numbers are generated from a fixed seed, so keys
+ *    are the same every time the program is run.
+ *
+ * @version 1.0   17 October 2026
+ *
+ * @author  Claus Martinsen
+ */
+
+public final class Zobrist {
+
+	/** Indexed by the piece code, (color << 3) | type, and the square */
+	private static final long[][] PIECE_SQUARE = new long[16][64];
+	private static final long[] CASTLING = new long[16];
+	private static final long[] EN_PASSANT_FILE = new long[8];
+	private static final long SIDE;
+
+	private static long seed = 0x2545F4914F6CDD1DL;
+
+	static {
+		for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+			for (int type = Position.PAWN; type <= Position.KING; type++) {
+				for (int square = 0; square < 64; square++) {
+					PIECE_SQUARE[Position.makePiece(color, type)][square] = nextRandom();
+				}
+			}
+		}
+		//One number per right, so the key of a set of rights is the XOR of its rights
+		long[] rights = {nextRandom(), nextRandom(), nextRandom(), nextRandom()};
+		for (int i = 0; i < 16; i++) {
+			for (int right = 0; right < 4; right++) {
+				if ((i & (1 << right)) != 0) {
+					CASTLING[i] ^= rights[right];
+				}
+			}
+		}
+		for (int file = 0; file < 8; file++) {
+			EN_PASSANT_FILE[file] = nextRandom();
+		}
+		SIDE = nextRandom();
+	}
+
+	private Zobrist() {
+	}
+
+	public static long piece(int piece, int square) {
+		return PIECE_SQUARE[piece][square];
+	}
+
+	public static long castling(int castlingRights) {
+		return CASTLING[castlingRights];
+	}
+
+	/** The number for the file of the en passant square, or 0 if there is none */
+	public static long enPassant(int square) {
+		return (square == Position.NO_SQUARE) ? 0 : EN_PASSANT_FILE[Bitboards.fileOf(square)];
+	}
+
+	/** XORed into the key when black is to move */
+	public static long side() {
+		return SIDE;
+	}
+
+	/** Computes the key of the position from scratch */
+	public static long compute(Position position) {
+		long key = 0;
+		for (long occupied = position.occupied(); occupied != 0; occupied &= occupied - 1) {
+			int square = Long.numberOfTrailingZeros(occupied);
+			key ^= piece(position.pieceAt(square), square);
+		}
+		key ^= castling(position.getCastlingRights()) ^ enPassant(position.getEnPassantSquare());
+		if (position.getSideToMove() == Position.BLACK) {
+			key ^= SIDE;
+		}
+		return key;
+	}
+
+	/** Xorshift random number generator */
+	private static long nextRandom() {
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		return seed * 0x2545F4914F6CDD1DL;
+	}
+}
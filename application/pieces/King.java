@@ -1,6 +1,5 @@
 package application.pieces;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 import application.CastelingMove;
@@ -8,6 +7,8 @@ import application.ChessGame;
 import application.ChessMove;
 import application.Player;
 import application.Square;
+import application.engine.Attacks;
+import application.engine.Position;
 
 /**
  *    Class that represents a chess King.
@@ -22,8 +23,6 @@ import application.Square;
 
 public class King extends Piece {
 
-	private static final int[][] movePattern = {{-1, -1}, {-1, 1}, {1, 1}, {1, -1}, 
-			{-1, 0}, {1, 0}, {0, 1}, {0, -1}};
 	private final Rook queenSideRook;
 	private final Rook kingSideRook;
 	
@@ -34,43 +33,26 @@ public class King extends Piece {
 		kingSideRook = (Rook) game.getSquare(7, row).getPiece();
 	}
 	
-	/** Goes through all squares in the board and checks
-	 * for any enemy pieces that has its (the kings) square
-	 * in its collection of legal moves */
+	/** Checks if any enemy piece attacks the kings square,
+	 * by looking backwards from the square with the attack
+	 * tables of each piece type */
 	public boolean isChecked() {
-		Player opponent = (getOwner() == game.getWhite()) ? game.getBlack() : game.getWhite();
-		for (Piece piece : opponent.getPieces(game)) {
-			piece.updatePseudoLegalMoves();
-			for (ChessMove PLM : piece.getPseudoLegalMoves()) {
-				if (PLM.getToSquare().equals(this.getSquare())) {
-					return true;
-				} 
-			}
-		}
-		return false;
+		return canOpponentReachSquare(getSquare());
 	}
 	
 	public boolean isMoved() {
 		return previousSquares.size() > 1;
 	}
 
+	@Override
+	public int getType() {
+		return Position.KING;
+	}
+
 	@Override
 	public void updatePseudoLegalMoves() {
-		Collection<ChessMove> posibleMoves = new ArrayList<>();
-		int x = getSquare().getCoordinates()[0];
-		int y = getSquare().getCoordinates()[1];
-		
-		for (int[] m : movePattern) {
-			int xMove = x + m[0];
-			int yMove = y + m[1];
-			if (xMove >= 0 && xMove < 8 && yMove >= 0 && yMove < 8) {
-				
-				Square posibleSquare = game.getSquare(xMove, yMove);
-				if (!posibleSquare.hasOwnPiece(getOwner())) {
-					posibleMoves.add(new ChessMove(this, getSquare(), posibleSquare));
-				}
-			}
-		}
+		setPseudoLegalMoves(Attacks.king(getSquare().getIndex()));
+		Collection<ChessMove> posibleMoves = pseudoLegalMoves;
 		
 		//Casteling
 		if (!(isMoved() || canOpponentReachSquare(getSquare()))) {
@@ -87,26 +69,17 @@ public class King extends Piece {
 			//Castle queenside
 			if (!(queenSideRook.isMoved() || game.getSquare(1, row).hasPiece()
 					|| game.getSquare(2, row).hasPiece() || game.getSquare(3, row).hasPiece())) {
-				if (!(canOpponentReachSquare(game.getSquare(1, row)) ||
+				if (!(canOpponentReachSquare(game.getSquare(3, row)) ||
 						canOpponentReachSquare(game.getSquare(2, row)))) {
 					posibleMoves.add(new CastelingMove(this, this, queenSideRook,
 							game.getSquare(2, row), game.getSquare(3, row)));
 				}
 			}
 		}
-		pseudoLegalMoves = posibleMoves;
 	}
 	
 	private boolean canOpponentReachSquare(Square square) {
-		Player opponent = (getOwner() == game.getWhite()) ? game.getBlack() : game.getWhite();
-		 
-		for (Piece piece : opponent.getPieces(game)) {
-			for (ChessMove move : piece.getPseudoLegalMoves()) {
-				if (move.getToSquare() == square) {
-					return true;
-				}
-			}
-		}
-		return false;
+		int opponent = 1 - game.getColor(getOwner());
+		return game.getPosition().isSquareAttacked(square.getIndex(), opponent);
 	}
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import application.ChessMove;
 import application.EnPassantMove;
 import application.Player;
 import application.Square;
+import application.engine.Position;
 
 public class Pawn extends Piece {
 	
@@ -19,12 +20,17 @@ public class Pawn extends Piece {
 		startingRow = (getName().charAt(0) == 'W') ? 1 : 6;
 	}
 	
+	@Override
+	public int getType() {
+		return Position.PAWN;
+	}
+
 	@Override
 	public void updatePseudoLegalMoves() {
 		Collection<ChessMove> posibleMoves = new ArrayList<>();
 		
-		int x = getSquare().getCoordinates()[0];
-		int y = getSquare().getCoordinates()[1];
+		int x = getSquare().getX();
+		int y = getSquare().getY();
 		
 		if (y + direction < 8 && y + direction >= 0) {
 			//Jump one tile forward
@@ -55,6 +55,7 @@ public abstract class Piece {
 		if (this.square != null) {
 			this.square.setPiece(this);
 		}
+		game.invalidatePosition();
 	}
 	
 	public void undoLastMove() throws IllegalStateException {
@@ -105,6 +106,10 @@ public abstract class Piece {
 		return legalMoves;
 	}
 	
+	/** The type of the piece as used by the engine,
+	 * e.g. {@link application.engine.Position#KNIGHT} */
+	public abstract int getType();
+	
 	/** Alters the collection pseudoLegalMoves which
 	 * is the moves the piece can move to without taking
 	 * into account if its own King is in check.
@@ -112,16 +117,23 @@ public abstract class Piece {
 	 * the piece can move in this method. */
 	public abstract void updatePseudoLegalMoves();
 	
-	public void updateLegalMoves() {
-		updatePseudoLegalMoves();
-		Collection<ChessMove> legalMoves = new ArrayList<>();
-		
-		for (ChessMove move : pseudoLegalMoves) {
-			if (game.testIfLegalMove(move)) {
-				legalMoves.add(move);
-			}
+	/** Sets pseudoLegalMoves to a move to each of the squares
+	 * in the bitboard of attacked squares that does not hold
+	 * one of the owners own pieces */
+	protected void setPseudoLegalMoves(long attacks) {
+		long targets = attacks & ~game.getPosition().colorPieces(game.getColor(owner));
+		Collection<ChessMove> posibleMoves = new ArrayList<>(Long.bitCount(targets));
+		for (; targets != 0; targets &= targets - 1) {
+			Square posibleSquare = game.getSquare(Long.numberOfTrailingZeros(targets));
+			posibleMoves.add(new ChessMove(this, getSquare(), posibleSquare));
 		}
-		this.legalMoves = legalMoves;
+		pseudoLegalMoves = posibleMoves;
+	}
+	
+	/** Sets legalMoves to the pieces moves among the legal
+	 * moves the game generates once for all of the owners pieces */
+	public void updateLegalMoves() {
+		this.legalMoves = game.getLegalMoves(this);
 	}
 	
 	public void setLegalMoves(Collection<ChessMove> legalMoves) {